@@ -0,0 +1,117 @@
+package com.example.commons.security.controller;
+
+import com.example.commons.security.annotation.*;
+import com.example.commons.security.controller.ModuleEndpointsController.EndpointInfo;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Строит список эндпоинтов модуля по обработчикам, зарегистрированным в RequestMappingHandlerMapping.
+ * Поддерживает Spring MVC и WebFlux - используется тот стек, который есть в classpath модуля.
+ *
+ * В отличие от разбора аннотаций классов, пути берутся уже собранными (с префиксами и всеми
+ * вариантами из @RequestMapping), ровно такими, какими их обрабатывает модуль.
+ */
+class HandlerMappingEndpoints {
+
+    private static final boolean MVC_PRESENT = ClassUtils.isPresent(
+            "org.springframework.web.servlet.mvc.method.RequestMappingInfoHandlerMapping",
+            HandlerMappingEndpoints.class.getClassLoader());
+
+    private static final boolean WEBFLUX_PRESENT = ClassUtils.isPresent(
+            "org.springframework.web.reactive.result.method.RequestMappingInfoHandlerMapping",
+            HandlerMappingEndpoints.class.getClassLoader());
+
+    private static final List<Class<? extends Annotation>> SECURITY_ANNOTATIONS = List.of(
+            RequireReadDeclaration.class,
+            RequireWriteDeclaration.class,
+            RequireApproveDeclaration.class,
+            RequireReadWare.class,
+            RequireWriteWare.class,
+            RequireManageInventory.class);
+
+    private HandlerMappingEndpoints() {
+    }
+
+    /**
+     * Возвращает эндпоинты всех обработчиков модуля с аннотацией безопасности.
+     * Обработчики без явного HTTP метода пропускаются - gateway хранит правила по методу и пути.
+     */
+    static List<EndpointInfo> find(ApplicationContext context) {
+        List<EndpointInfo> endpoints = new ArrayList<>();
+        if (MVC_PRESENT) {
+            MvcMappings.collect(context, endpoints);
+        }
+        if (WEBFLUX_PRESENT) {
+            WebFluxMappings.collect(context, endpoints);
+        }
+        return endpoints;
+    }
+
+    private static void addEndpoints(HandlerMethod handlerMethod, Set<RequestMethod> methods,
+                                     Set<String> patterns, List<EndpointInfo> endpoints) {
+        String annotationType = findSecurityAnnotation(handlerMethod);
+        if (annotationType == null) {
+            return;
+        }
+        for (RequestMethod method : methods) {
+            for (String pattern : patterns) {
+                endpoints.add(new EndpointInfo(method.name(), pattern, annotationType));
+            }
+        }
+    }
+
+    private static String findSecurityAnnotation(HandlerMethod handlerMethod) {
+        for (Class<? extends Annotation> annotation : SECURITY_ANNOTATIONS) {
+            if (AnnotatedElementUtils.hasAnnotation(handlerMethod.getMethod(), annotation)) {
+                return annotation.getSimpleName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Обработчики Spring MVC (класс загружается, только если MVC есть в classpath)
+     */
+    private static class MvcMappings {
+        static void collect(ApplicationContext context, List<EndpointInfo> endpoints) {
+            for (org.springframework.web.servlet.mvc.method.RequestMappingInfoHandlerMapping mapping :
+                    context.getBeansOfType(org.springframework.web.servlet.mvc.method.RequestMappingInfoHandlerMapping.class).values()) {
+                for (Map.Entry<org.springframework.web.servlet.mvc.method.RequestMappingInfo, HandlerMethod> entry :
+                        mapping.getHandlerMethods().entrySet()) {
+                    addEndpoints(entry.getValue(), entry.getKey().getMethodsCondition().getMethods(),
+                            entry.getKey().getPatternValues(), endpoints);
+                }
+            }
+        }
+    }
+
+    /**
+     * Обработчики Spring WebFlux (класс загружается, только если WebFlux есть в classpath)
+     */
+    private static class WebFluxMappings {
+        static void collect(ApplicationContext context, List<EndpointInfo> endpoints) {
+            for (org.springframework.web.reactive.result.method.RequestMappingInfoHandlerMapping mapping :
+                    context.getBeansOfType(org.springframework.web.reactive.result.method.RequestMappingInfoHandlerMapping.class).values()) {
+                for (Map.Entry<org.springframework.web.reactive.result.method.RequestMappingInfo, HandlerMethod> entry :
+                        mapping.getHandlerMethods().entrySet()) {
+                    Set<String> patterns = new LinkedHashSet<>();
+                    entry.getKey().getPatternsCondition().getPatterns()
+                            .forEach(pattern -> patterns.add(pattern.getPatternString()));
+                    addEndpoints(entry.getValue(), entry.getKey().getMethodsCondition().getMethods(),
+                            patterns, endpoints);
+                }
+            }
+        }
+    }
+}
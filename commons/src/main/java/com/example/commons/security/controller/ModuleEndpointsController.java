@@ -1,9 +1,22 @@
 package com.example.commons.security.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * Базовый контроллер, который должен быть добавлен в каждый модуль (микросервис).
@@ -11,35 +24,148 @@ import java.util.List;
  * 
  * Gateway будет вызывать этот endpoint для получения информации об эндпоинтах модуля.
  * 
- * ВАЖНО: В каждом модуле нужно создать свой контроллер, наследующий этот класс,
- * и реализовать метод scanControllers() для сканирования контроллеров модуля.
+ * По умолчанию список строится из обработчиков, зарегистрированных в RequestMappingHandlerMapping
+ * модуля (Spring MVC или WebFlux), и их аннотаций Require*. В модуле достаточно создать контроллер,
+ * наследующий этот класс; scanControllers() можно переопределить, если нужен другой источник.
+ *
+ * Список строится один раз, при первом обращении, и сериализуется один раз для каждого формата.
+ * Запросы gateway получают готовые байты. refreshManifest() перестраивает список, если эндпоинты модуля
+ * меняются во время работы.
+ *
+ * У списка эндпоинтов есть версия - хэш содержимого, которая передается в ETag.
+ * Gateway, знающий версию, получает 304 без тела (If-None-Match), если список не изменился,
+ * или только изменения относительно своей версии (since=<версия>), если она еще есть в истории.
+ *
+ * Если gateway запрашивает application/x-ndjson, список отдается по записи на строку: первая строка -
+ * заголовок (moduleName, version, delta), дальше по строке на эндпоинт (удаленные - с "removed": true).
+ * Такой ответ gateway разбирает потоком, не загружая весь список в память.
+ *
+ * GET /api/module/endpoints/resolve отвечает на вопрос gateway об одном пути, для которого у него нет
+ * правила (режим read-through), не отдавая весь список.
  */
 @RestController
 @RequestMapping("/api/module")
-public class ModuleEndpointsController {
+public class ModuleEndpointsController implements ApplicationContextAware {
+
+    // Сколько предыдущих версий списка хранится для ответов с изменениями
+    private static final int VERSION_HISTORY_SIZE = 16;
+
+    private static final String APPLICATION_JSON = "application/json";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    // Версия -> эндпоинты этой версии (ключ - метод:путь)
+    private final LinkedHashMap<String, Map<String, EndpointInfo>> versionHistory = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, EndpointInfo>> eldest) {
+            return size() > VERSION_HISTORY_SIZE;
+        }
+    };
+
+    private ApplicationContext applicationContext;
+
+    // Текущий список; null - еще не построен
+    private volatile ManifestVersion manifest;
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
 
     /**
      * Возвращает список всех эндпоинтов модуля с их аннотациями безопасности.
      * GET /api/module/endpoints
      * 
      * Gateway будет вызывать этот endpoint для регистрации эндпоинтов.
+     *
+     * @param ifNoneMatch версия, которая уже есть у gateway - если она текущая, возвращается 304
+     * @param since версия, относительно которой вернуть только изменения
      */
     @GetMapping("/endpoints")
-    public ModuleEndpointsResponse getEndpoints() {
-        ModuleEndpointsResponse response = new ModuleEndpointsResponse();
-        response.moduleName = getModuleName();
-        response.endpoints = scanControllers();
-        return response;
+    public ResponseEntity<byte[]> getEndpoints(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestParam(value = "since", required = false) String since) {
+        return respond(ifNoneMatch, since, false);
+    }
+
+    /**
+     * Тот же список в формате NDJSON - для потокового разбора в gateway.
+     * GET /api/module/endpoints (Accept: application/x-ndjson)
+     */
+    @GetMapping(value = "/endpoints", produces = APPLICATION_NDJSON)
+    public ResponseEntity<byte[]> getEndpointsStream(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestParam(value = "since", required = false) String since) {
+        return respond(ifNoneMatch, since, true);
+    }
+
+    /**
+     * Находит эндпоинт модуля, обрабатывающий запрос
+     * GET /api/module/endpoints/resolve?method=GET&path=/api/declarations/42
+     *
+     * @return эндпоинт с шаблоном пути (например, /api/declarations/{id}) или 404, если такого нет.
+     *         Если подходят несколько шаблонов, возвращается самый конкретный.
+     */
+    @GetMapping("/endpoints/resolve")
+    public ResponseEntity<EndpointInfo> resolveEndpoint(@RequestParam("method") String method,
+                                                        @RequestParam("path") String path) {
+        ManifestVersion current = currentVersion();
+        EndpointInfo exact = current.endpoints.get(method + ":" + path);
+        if (exact != null) {
+            return ResponseEntity.ok().eTag("\"" + current.version + "\"").body(exact);
+        }
+        Comparator<String> specificity = PATH_MATCHER.getPatternComparator(path);
+        EndpointInfo best = null;
+        for (EndpointInfo endpoint : current.endpoints.values()) {
+            if (method.equals(endpoint.httpMethod) && PATH_MATCHER.match(endpoint.path, path)
+                    && (best == null || specificity.compare(endpoint.path, best.path) < 0)) {
+                best = endpoint;
+            }
+        }
+        return best != null
+                ? ResponseEntity.ok().eTag("\"" + current.version + "\"").body(best)
+                : ResponseEntity.notFound().eTag("\"" + current.version + "\"").build();
+    }
+
+    /**
+     * Полный список эндпоинтов модуля с текущей версией
+     */
+    public ModuleEndpointsResponse getManifest() {
+        return buildFull(currentVersion());
+    }
+
+    /**
+     * Изменения списка эндпоинтов относительно версии since
+     *
+     * @return ответ с delta = true или null, если версии since уже нет в истории
+     */
+    public ModuleEndpointsResponse getChanges(String since) {
+        return buildChanges(currentVersion(), since);
+    }
+
+    /**
+     * Перестраивает список эндпоинтов. Если он не изменился, версия и готовые байты сохраняются.
+     */
+    public synchronized void refreshManifest() {
+        ManifestVersion current = manifest;
+        ManifestVersion rebuilt = buildVersion();
+        if (current == null || !current.version.equals(rebuilt.version)) {
+            manifest = rebuilt;
+        }
     }
 
     /**
      * Сканирует контроллеры текущего модуля и возвращает список эндпоинтов.
-     * Должен быть переопределен в каждом модуле для сканирования его контроллеров.
+     * По умолчанию берет обработчики из RequestMappingHandlerMapping модуля; можно переопределить.
      */
     protected List<EndpointInfo> scanControllers() {
-        // Базовая реализация возвращает пустой список
-        // В каждом модуле нужно переопределить этот метод
-        return new ArrayList<>();
+        if (applicationContext == null) {
+            return new ArrayList<>();
+        }
+        return HandlerMappingEndpoints.find(applicationContext);
     }
 
     /**
@@ -55,12 +181,157 @@ public class ModuleEndpointsController {
         return "unknown";
     }
 
+    private ResponseEntity<byte[]> respond(String ifNoneMatch, String since, boolean ndjson) {
+        ManifestVersion current = currentVersion();
+        String eTag = "\"" + current.version + "\"";
+
+        if (ifNoneMatch != null && matchesETag(ifNoneMatch, current.version)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        ModuleEndpointsResponse changes = since != null ? buildChanges(current, since) : null;
+        byte[] body = changes != null
+                ? serialize(changes, ndjson)
+                : current.serializedFull(ndjson, () -> serialize(buildFull(current), ndjson));
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .header(HttpHeaders.CONTENT_TYPE, ndjson ? APPLICATION_NDJSON : APPLICATION_JSON)
+                .body(body);
+    }
+
+    private ManifestVersion currentVersion() {
+        ManifestVersion current = manifest;
+        if (current == null) {
+            synchronized (this) {
+                current = manifest;
+                if (current == null) {
+                    current = buildVersion();
+                    manifest = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Сканирует эндпоинты и вычисляет версию списка. Новая версия запоминается в истории.
+     */
+    private synchronized ManifestVersion buildVersion() {
+        Map<String, EndpointInfo> endpoints = new TreeMap<>();
+        for (EndpointInfo endpoint : scanControllers()) {
+            endpoints.put(endpoint.httpMethod + ":" + endpoint.path, endpoint);
+        }
+        String version = computeVersion(endpoints);
+        versionHistory.putIfAbsent(version, endpoints);
+        return new ManifestVersion(version, endpoints);
+    }
+
+    private ModuleEndpointsResponse buildFull(ManifestVersion current) {
+        ModuleEndpointsResponse response = new ModuleEndpointsResponse();
+        response.moduleName = getModuleName();
+        response.version = current.version;
+        response.endpoints.addAll(current.endpoints.values());
+        return response;
+    }
+
+    private ModuleEndpointsResponse buildChanges(ManifestVersion current, String since) {
+        Map<String, EndpointInfo> previous = findVersion(since);
+        if (previous == null) {
+            return null;
+        }
+        // Только изменения: новые и измененные эндпоинты, и ключи удаленных
+        ModuleEndpointsResponse response = new ModuleEndpointsResponse();
+        response.moduleName = getModuleName();
+        response.version = current.version;
+        response.delta = true;
+        for (Map.Entry<String, EndpointInfo> entry : current.endpoints.entrySet()) {
+            EndpointInfo old = previous.get(entry.getKey());
+            if (old == null || !Objects.equals(old.annotationType, entry.getValue().annotationType)) {
+                response.endpoints.add(entry.getValue());
+            }
+        }
+        for (Map.Entry<String, EndpointInfo> entry : previous.entrySet()) {
+            if (!current.endpoints.containsKey(entry.getKey())) {
+                response.removed.add(new EndpointInfo(entry.getValue().httpMethod, entry.getValue().path, null));
+            }
+        }
+        return response;
+    }
+
+    private synchronized Map<String, EndpointInfo> findVersion(String version) {
+        return versionHistory.get(version);
+    }
+
     /**
-     * Ответ со списком эндпоинтов
+     * Сериализует ответ в JSON или NDJSON
+     */
+    private static byte[] serialize(ModuleEndpointsResponse response, boolean ndjson) {
+        try {
+            if (!ndjson) {
+                return OBJECT_MAPPER.writeValueAsBytes(response);
+            }
+            StringBuilder lines = new StringBuilder();
+            Map<String, Object> header = new LinkedHashMap<>();
+            header.put("moduleName", response.moduleName);
+            header.put("version", response.version);
+            header.put("delta", response.delta);
+            lines.append(OBJECT_MAPPER.writeValueAsString(header)).append('\n');
+            for (EndpointInfo endpoint : response.endpoints) {
+                lines.append(OBJECT_MAPPER.writeValueAsString(endpoint)).append('\n');
+            }
+            for (EndpointInfo endpoint : response.removed) {
+                Map<String, Object> record = new LinkedHashMap<>();
+                record.put("httpMethod", endpoint.httpMethod);
+                record.put("path", endpoint.path);
+                record.put("removed", true);
+                lines.append(OBJECT_MAPPER.writeValueAsString(record)).append('\n');
+            }
+            return lines.toString().getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Версия - первые 16 символов SHA-256 от отсортированного списка эндпоинтов
+     */
+    private static String computeVersion(Map<String, EndpointInfo> endpoints) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, EndpointInfo> entry : endpoints.entrySet()) {
+                digest.update((entry.getKey() + "=" + entry.getValue().annotationType + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static boolean matchesETag(String ifNoneMatch, String version) {
+        for (String tag : ifNoneMatch.split(",")) {
+            String value = tag.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.replace("\"", "").equals(version)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ответ со списком эндпоинтов.
+     * Если delta = true, endpoints содержит только новые и измененные эндпоинты относительно
+     * запрошенной версии, а removed - удаленные (метод и путь).
      */
     public static class ModuleEndpointsResponse {
         public String moduleName;
+        public String version;
+        public boolean delta;
         public List<EndpointInfo> endpoints = new ArrayList<>();
+        public List<EndpointInfo> removed = new ArrayList<>();
     }
 
     /**
@@ -80,4 +351,35 @@ public class ModuleEndpointsController {
             this.annotationType = annotationType;
         }
     }
+
+    /**
+     * Версия списка эндпоинтов и его готовые сериализованные формы
+     */
+    private static class ManifestVersion {
+        private final String version;
+        private final Map<String, EndpointInfo> endpoints;
+        private volatile byte[] json;
+        private volatile byte[] ndjson;
+
+        private ManifestVersion(String version, Map<String, EndpointInfo> endpoints) {
+            this.version = version;
+            this.endpoints = endpoints;
+        }
+
+        /**
+         * Полный список в нужном формате; сериализуется при первом запросе и дальше не меняется
+         */
+        private byte[] serializedFull(boolean asNdjson, Supplier<byte[]> serializer) {
+            byte[] bytes = asNdjson ? ndjson : json;
+            if (bytes == null) {
+                bytes = serializer.get();
+                if (asNdjson) {
+                    ndjson = bytes;
+                } else {
+                    json = bytes;
+                }
+            }
+            return bytes;
+        }
+    }
 }
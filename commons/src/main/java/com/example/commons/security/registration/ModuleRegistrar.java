@@ -0,0 +1,249 @@
+package com.example.commons.security.registration;
+
+import com.example.commons.security.controller.ModuleEndpointsController;
+import com.example.commons.security.controller.ModuleEndpointsController.EndpointInfo;
+import com.example.commons.security.controller.ModuleEndpointsController.ModuleEndpointsResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Регистрация модуля в gateway по инициативе модуля (push), без ожидания опроса.
+ *
+ * После старта модуль отправляет gateway полный список своих эндпоинтов одним сжатым (gzip)
+ * запросом. Затем периодически проверяет версию списка и при изменении отправляет только
+ * разницу относительно последней принятой gateway версии. Если gateway не знает эту версию
+ * (например, перезапустился), он отвечает 409 и модуль отправляет полный список.
+ * Если список не изменился, модуль отправляет heartbeat, продлевая аренду своих правил в gateway.
+ * Когда gateway отвечает на heartbeat 404 (аренда истекла или gateway перезапустился), модуль
+ * регистрируется заново с полным списком.
+ * При ошибках отправка повторяется с экспоненциальной задержкой и случайным разбросом.
+ *
+ * Список эндпоинтов берется из ModuleEndpointsController модуля и перестраивается при каждой
+ * проверке. Включается свойством module.registration.enabled=true; пакет
+ * com.example.commons.security.registration должен входить в сканирование компонентов модуля.
+ */
+@Component
+@ConditionalOnProperty(name = "module.registration.enabled", havingValue = "true", matchIfMissing = false)
+public class ModuleRegistrar implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(ModuleRegistrar.class);
+
+    private final ObjectProvider<ModuleEndpointsController> endpointsController;
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService scheduler;
+    private final HttpClient httpClient;
+    private final String instanceId = ManagementFactory.getRuntimeMXBean().getName();
+
+    @Value("${module.registration.gateway-url:http://localhost:8080}")
+    private String gatewayUrl;
+
+    @Value("${module.registration.path:/api/gateway/endpoints/manifest}")
+    private String registrationPath;
+
+    @Value("${module.registration.heartbeat-path:/api/gateway/endpoints/heartbeat}")
+    private String heartbeatPath;
+
+    // Должен быть заметно меньше gateway.registration.lease-ms
+    @Value("${module.registration.check-interval-ms:30000}")
+    private long checkIntervalMs;
+
+    @Value("${module.registration.timeout-ms:5000}")
+    private long timeoutMs;
+
+    @Value("${module.registration.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${module.registration.max-backoff-ms:60000}")
+    private long maxBackoffMs;
+
+    // Версия списка, которую gateway принял последней (null - еще не принял)
+    private volatile String acceptedVersion;
+    private volatile int failedAttempts;
+
+    public ModuleRegistrar(ObjectProvider<ModuleEndpointsController> endpointsController,
+                           ObjectProvider<ObjectMapper> objectMapper) {
+        this.endpointsController = endpointsController;
+        this.objectMapper = objectMapper.getIfAvailable(ObjectMapper::new);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "module-registrar");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        scheduler.execute(this::pushAndReschedule);
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Отправляет изменения (если есть) и планирует следующую проверку:
+     * через check-interval-ms после успеха или с растущей задержкой после ошибки
+     */
+    private void pushAndReschedule() {
+        long delay;
+        try {
+            push();
+            failedAttempts = 0;
+            delay = checkIntervalMs;
+        } catch (Exception e) {
+            failedAttempts++;
+            delay = backoffDelay(failedAttempts);
+            log.warn("Failed to register endpoints in gateway {} (attempt {}), retrying in {} ms: {}",
+                    gatewayUrl, failedAttempts, delay, e.getMessage());
+        }
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::pushAndReschedule, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void push() throws IOException, InterruptedException {
+        ModuleEndpointsController controller = endpointsController.getIfAvailable();
+        if (controller == null) {
+            log.warn("No ModuleEndpointsController in module - nothing to register in gateway");
+            return;
+        }
+        // Список кэшируется в контроллере - перестраиваем, чтобы увидеть изменения эндпоинтов
+        controller.refreshManifest();
+        ModuleEndpointsResponse manifest = controller.getManifest();
+        if (manifest.version.equals(acceptedVersion)) {
+            int status = sendHeartbeat(manifest);
+            if (status != 404) {
+                if (status / 100 != 2) {
+                    throw new IOException("Gateway responded to heartbeat with status " + status);
+                }
+                return;
+            }
+            log.info("Gateway has no endpoints of module {} version {}, registering again",
+                    manifest.moduleName, manifest.version);
+            acceptedVersion = null;
+        }
+
+        // Разница относительно принятой версии, если модуль ее еще помнит
+        ModuleEndpointsResponse changes = acceptedVersion != null ? controller.getChanges(acceptedVersion) : null;
+        int status = send(changes != null
+                ? ManifestRegistration.delta(changes, acceptedVersion, instanceId)
+                : ManifestRegistration.full(manifest, instanceId));
+        if (status == 409 && changes != null) {
+            // Gateway не знает базовую версию - отправляем полный список
+            log.info("Gateway does not know version {} of module {}, sending full endpoint list",
+                    acceptedVersion, manifest.moduleName);
+            changes = null;
+            status = send(ManifestRegistration.full(manifest, instanceId));
+        }
+        if (status / 100 != 2) {
+            throw new IOException("Gateway responded with status " + status);
+        }
+        acceptedVersion = manifest.version;
+        log.info("Registered endpoints of module {} in gateway {} (version {}, {})", manifest.moduleName, gatewayUrl,
+                manifest.version, changes != null
+                        ? changes.endpoints.size() + " changed, " + changes.removed.size() + " removed"
+                        : manifest.endpoints.size() + " endpoints");
+    }
+
+    /**
+     * Отправляет список одним сжатым запросом
+     *
+     * @return HTTP статус ответа gateway
+     */
+    private int send(ManifestRegistration registration) throws IOException, InterruptedException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(body)) {
+            objectMapper.writeValue(gzip, registration);
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(gatewayUrl + registrationPath))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("Content-Type", "application/json")
+                .header("Content-Encoding", "gzip")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /**
+     * Продлевает аренду правил модуля в gateway
+     *
+     * @return HTTP статус ответа gateway
+     */
+    private int sendHeartbeat(ModuleEndpointsResponse manifest) throws IOException, InterruptedException {
+        Map<String, String> heartbeat = new LinkedHashMap<>();
+        heartbeat.put("moduleName", manifest.moduleName);
+        heartbeat.put("instanceId", instanceId);
+        heartbeat.put("version", manifest.version);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(gatewayUrl + heartbeatPath))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(heartbeat)))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private long backoffDelay(int attempt) {
+        long delay = Math.min(maxBackoffMs, retryBackoffMs << Math.min(attempt - 1, 20));
+        // Разброс +-50%, чтобы экземпляры модулей не повторяли запросы одновременно
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay + 1);
+    }
+
+    /**
+     * Тело запроса регистрации: полный список или разница относительно baseVersion
+     */
+    public static class ManifestRegistration {
+        public String moduleName;
+        public String instanceId;
+        public String version;
+        public String baseVersion;
+        public boolean delta;
+        public List<EndpointInfo> endpoints = new ArrayList<>();
+        public List<EndpointInfo> removed = new ArrayList<>();
+
+        static ManifestRegistration full(ModuleEndpointsResponse manifest, String instanceId) {
+            ManifestRegistration registration = new ManifestRegistration();
+            registration.moduleName = manifest.moduleName;
+            registration.instanceId = instanceId;
+            registration.version = manifest.version;
+            registration.endpoints = manifest.endpoints;
+            return registration;
+        }
+
+        static ManifestRegistration delta(ModuleEndpointsResponse changes, String baseVersion, String instanceId) {
+            ManifestRegistration registration = full(changes, instanceId);
+            registration.baseVersion = baseVersion;
+            registration.delta = true;
+            registration.removed = changes.removed;
+            return registration;
+        }
+    }
+}
@@ -2,19 +2,39 @@ package com.example.gateway.config;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.net.URL;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Сервис для автоматического пересканирования контроллеров при изменении модулей.
- * Периодически проверяет время модификации классов контроллеров и пересканирует при изменениях.
+ * Периодически проверяет время модификации классов контроллеров и пересканирует
+ * только измененные, добавленные и удаленные контроллеры.
+ *
+ * Основной механизм для директорий классов - события файловой системы (ControllerChangeWatcher).
+ * Опрос директорий выполняется только как запасной вариант, если часть classpath нельзя
+ * отслеживать через события. Опрос сравнивает время модификации class-файлов без их чтения;
+ * в индексе classpath заново читаются только измененные, добавленные и удаленные классы.
+ *
+ * Jar-файлы проверяются при каждом опросе по отпечатку (JarChangeDetector): пока размер и время
+ * модификации jar не изменились, проверка ничего не читает, а после замены jar пересканируются
+ * только классы с измененной CRC.
+ *
+ * Интервал между проверками адаптивный: после обнаруженного изменения он сбрасывается
+ * до минимального, при отсутствии изменений постепенно растет, а под нагрузкой (высокая частота
+ * запросов или загрузка CPU) дополнительно увеличивается. Интервал всегда остается в границах
+ * gateway.auto-rescan.min-interval .. gateway.auto-rescan.max-interval.
+ * Проверки выполняются в собственном потоке и не занимают общий планировщик Spring.
  */
 @Service
 @ConditionalOnProperty(name = "gateway.auto-rescan.enabled", havingValue = "true", matchIfMissing = false)
@@ -23,14 +43,62 @@ public class AutoRescanService {
     private static final Logger log = LoggerFactory.getLogger(AutoRescanService.class);
 
     private final ControllerScanner controllerScanner;
-    private final Map<String, Long> lastModifiedMap = new ConcurrentHashMap<>();
+    private final ClasspathIndex classpathIndex;
+    private final RescanCoordinator rescanCoordinator;
+    private final ObjectProvider<ControllerChangeWatcher> changeWatcher;
+    private final JarChangeDetector jarChangeDetector;
+    private final RequestLoadMonitor loadMonitor;
+    // Время модификации class-файлов в директориях classpath: имя класса -> lastModified
+    private Map<String, Long> classFileTimes = new HashMap<>();
+    // Контроллеры, найденные при последнем опросе директорий
+    private Set<String> knownControllers = new HashSet<>();
+    private final ScheduledExecutorService scheduler;
     private volatile boolean initialized = false;
-    
-    @Value("${endpoint-scanner.scan-packages:com.example.moduleA.controller,com.example.moduleB.controller}")
-    private String scanPackages;
 
-    public AutoRescanService(ControllerScanner controllerScanner) {
+    // Во сколько раз растет интервал после проверки без изменений
+    private static final double STABLE_BACKOFF = 1.5;
+    // Во сколько раз дополнительно растет интервал под нагрузкой
+    private static final double BUSY_BACKOFF = 2.0;
+
+    @Value("${gateway.auto-rescan.polling-interval:30000}")
+    private long pollingInterval;
+
+    @Value("${gateway.auto-rescan.initial-delay:30000}")
+    private long initialDelay;
+
+    @Value("${gateway.auto-rescan.min-interval:5000}")
+    private long minInterval;
+
+    @Value("${gateway.auto-rescan.max-interval:300000}")
+    private long maxInterval;
+
+    @Value("${gateway.auto-rescan.busy-cpu-load:0.75}")
+    private double busyCpuLoad;
+
+    @Value("${gateway.auto-rescan.busy-request-rate:100}")
+    private double busyRequestRate;
+
+    private volatile long currentInterval;
+    private volatile boolean busy = false;
+    private volatile long lastChangeDetectedAt = 0;
+    private volatile long checks = 0;
+
+    public AutoRescanService(ControllerScanner controllerScanner, ClasspathIndex classpathIndex,
+                             RescanCoordinator rescanCoordinator,
+                             ObjectProvider<ControllerChangeWatcher> changeWatcher,
+                             RequestLoadMonitor loadMonitor) {
         this.controllerScanner = controllerScanner;
+        this.classpathIndex = classpathIndex;
+        this.rescanCoordinator = rescanCoordinator;
+        this.changeWatcher = changeWatcher;
+        this.loadMonitor = loadMonitor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "auto-rescan");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.jarChangeDetector = new JarChangeDetector(classpathIndex,
+                className -> classpathIndex.acceptsClass(className) && controllerScanner.isInScanScope(className));
     }
 
     /**
@@ -38,189 +106,214 @@ public class AutoRescanService {
      */
     @jakarta.annotation.PostConstruct
     public void init() {
+        if (controllerScanner.isUsingPrecomputedRules()) {
+            // В native image classpath фиксирован на этапе сборки - отслеживать нечего
+            log.info("Authorization rules are precomputed at build time. Auto-rescan is disabled");
+            return;
+        }
         try {
-            scanAndStoreModificationTimes();
+            classFileTimes = readClassFileTimes();
+            knownControllers = new HashSet<>(findControllerClasses().keySet());
+            jarChangeDetector.init();
             initialized = true;
-            log.info("Auto-rescan service initialized. Monitoring controller changes every {} seconds", 
-                    getPollingInterval());
+            currentInterval = clamp(pollingInterval);
+            scheduler.schedule(this::scheduledCheck, initialDelay, TimeUnit.MILLISECONDS);
+            log.info("Auto-rescan service initialized. Checking controller changes every {} ms (adaptive, {}..{} ms)",
+                    currentInterval, minInterval, maxInterval);
         } catch (Exception e) {
             log.error("Failed to initialize auto-rescan service", e);
         }
     }
 
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
     /**
-     * Периодически проверяет изменения в контроллерах и пересканирует при необходимости
+     * Текущее состояние адаптивного планирования проверок
      */
-    @Scheduled(fixedDelayString = "${gateway.auto-rescan.polling-interval:30000}", initialDelayString = "${gateway.auto-rescan.initial-delay:30000}")
-    public void checkAndRescan() {
-        if (!initialized) {
-            return;
-        }
+    public Map<String, Object> getSchedulingStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("currentIntervalMs", currentInterval);
+        statistics.put("minIntervalMs", minInterval);
+        statistics.put("maxIntervalMs", maxInterval);
+        statistics.put("requestRate", loadMonitor.getRequestRate());
+        statistics.put("cpuLoad", loadMonitor.getCpuLoad());
+        statistics.put("busy", busy);
+        statistics.put("checks", checks);
+        statistics.put("lastChangeDetectedAt", lastChangeDetectedAt);
+        return statistics;
+    }
 
+    /**
+     * Выполняет проверку и планирует следующую с учетом нагрузки и недавних изменений
+     */
+    private void scheduledCheck() {
         try {
-            boolean hasChanges = false;
-            Set<String> currentControllerClasses = findControllerClasses();
-
-            // Проверяем изменения в существующих контроллерах
-            for (String className : currentControllerClasses) {
-                long currentModified = getClassModificationTime(className);
-                Long lastModified = lastModifiedMap.get(className);
-
-                if (lastModified == null) {
-                    // Новый контроллер
-                    hasChanges = true;
-                    log.debug("New controller detected: {}", className);
-                    lastModifiedMap.put(className, currentModified);
-                } else if (currentModified > lastModified && currentModified > 0) {
-                    // Изменен существующий контроллер
-                    hasChanges = true;
-                    log.debug("Detected change in controller: {} (was: {}, now: {})", 
-                            className, lastModified, currentModified);
-                    lastModifiedMap.put(className, currentModified);
-                } else if (currentModified > 0) {
-                    // Обновляем время модификации
-                    lastModifiedMap.put(className, currentModified);
-                }
+            boolean changed = checkAndRescan();
+            currentInterval = computeNextInterval(changed);
+            log.debug("Next controller change check in {} ms (busy: {})", currentInterval, busy);
+        } catch (Throwable e) {
+            // Следующая проверка планируется только отсюда - ошибка не должна остановить цепочку
+            log.error("Controller change check failed, next check in {} ms", currentInterval, e);
+        } finally {
+            if (!scheduler.isShutdown()) {
+                scheduler.schedule(this::scheduledCheck, currentInterval, TimeUnit.MILLISECONDS);
             }
+        }
+    }
 
-            // Проверяем удаленные контроллеры
-            Set<String> currentClasses = new HashSet<>(currentControllerClasses);
-            for (String className : new HashSet<>(lastModifiedMap.keySet())) {
-                if (!currentClasses.contains(className)) {
-                    hasChanges = true;
-                    log.debug("Controller removed: {}", className);
-                    lastModifiedMap.remove(className);
-                }
-            }
+    private long computeNextInterval(boolean changed) {
+        double requestRate = loadMonitor.sampleRequestRate();
+        double cpuLoad = loadMonitor.getCpuLoad();
+        busy = requestRate >= busyRequestRate || cpuLoad >= busyCpuLoad;
+
+        // После изменения следующие изменения вероятны (модуль обновляется) - проверяем чаще
+        double next = changed ? minInterval : currentInterval * STABLE_BACKOFF;
+        if (busy) {
+            next *= BUSY_BACKOFF;
+        }
+        return clamp((long) next);
+    }
+
+    private long clamp(long interval) {
+        return Math.max(minInterval, Math.min(maxInterval, interval));
+    }
 
-            // Дополнительная проверка: сравниваем количество найденных контроллеров
-            Set<Class<?>> scannedControllers = controllerScanner.scanControllers();
-            Set<String> scannedClassNames = new HashSet<>();
-            for (Class<?> clazz : scannedControllers) {
-                scannedClassNames.add(clazz.getName());
+    /**
+     * Проверяет изменения в контроллерах и пересканирует при необходимости
+     *
+     * @return true, если обнаружены изменения
+     */
+    public synchronized boolean checkAndRescan() {
+        if (!initialized) {
+            return false;
+        }
+        checks++;
+
+        try {
+            // Jar-файлы: точный список измененных классов по отпечаткам
+            Set<String> changedClasses = new HashSet<>(jarChangeDetector.detectChangedClasses());
+            if (!changedClasses.isEmpty()) {
+                log.debug("Detected {} changed classes in classpath jars", changedClasses.size());
             }
 
-            if (scannedClassNames.size() != lastModifiedMap.size()) {
-                hasChanges = true;
-                log.debug("Controller count changed: was {}, now {}", 
-                        lastModifiedMap.size(), scannedClassNames.size());
+            ControllerChangeWatcher watcher = changeWatcher.getIfAvailable();
+            if (watcher == null || watcher.isPollingRequired()) {
+                changedClasses.addAll(pollClassDirectories());
             }
 
-            if (hasChanges) {
-                log.info("Detected changes in controllers. Auto-rescanning...");
-                controllerScanner.rescan();
-                // Обновляем время модификации после пересканирования
-                scanAndStoreModificationTimes();
+            if (!changedClasses.isEmpty()) {
+                // Сканирование выполняется в потоке координатора, а не в потоке планировщика
+                log.info("Detected changes in {} controllers. Requesting rescan of changed controllers...", changedClasses.size());
+                rescanCoordinator.requestRescan(changedClasses);
+                lastChangeDetectedAt = System.currentTimeMillis();
+                return true;
             }
         } catch (Exception e) {
             log.error("Error during auto-rescan check", e);
         }
+        return false;
     }
 
     /**
-     * Сканирует и сохраняет время модификации всех контроллеров
+     * Опрашивает директории классов: сравнивает время модификации class-файлов с прошлым опросом.
+     * Используется, только если изменения нельзя получить через события файловой системы.
+     *
+     * Индекс classpath не сбрасывается целиком: refreshClasses() перечитывает только измененные
+     * class-файлы, поэтому jar-файлы и неизмененные классы при опросе не читаются.
      */
-    private void scanAndStoreModificationTimes() {
-        Set<String> controllerClasses = findControllerClasses();
-        for (String className : controllerClasses) {
-            long modified = getClassModificationTime(className);
-            lastModifiedMap.put(className, modified);
+    private Set<String> pollClassDirectories() {
+        Map<String, Long> currentTimes = readClassFileTimes();
+        Set<String> changedFiles = new HashSet<>();
+        for (Map.Entry<String, Long> entry : currentTimes.entrySet()) {
+            if (!entry.getValue().equals(classFileTimes.get(entry.getKey()))) {
+                changedFiles.add(entry.getKey());
+            }
+        }
+        for (String className : classFileTimes.keySet()) {
+            if (!currentTimes.containsKey(className)) {
+                changedFiles.add(className);
+            }
+        }
+        classFileTimes = currentTimes;
+        if (changedFiles.isEmpty()) {
+            return Collections.emptySet();
         }
-    }
 
-    /**
-     * Находит все классы контроллеров
-     */
-    private Set<String> findControllerClasses() {
-        Set<String> classes = new HashSet<>();
-        try {
-            // Получаем пакеты для сканирования из конфигурации
-            String[] packageArray = scanPackages.split(",");
-            
-            for (String packageName : packageArray) {
-                packageName = packageName.trim();
-                String resourcePath = packageName.replace('.', '/');
-                
-                try {
-                    java.util.Enumeration<URL> resources = 
-                        Thread.currentThread().getContextClassLoader()
-                            .getResources(resourcePath);
-                    
-                    while (resources.hasMoreElements()) {
-                        URL url = resources.nextElement();
-                        if ("file".equals(url.getProtocol())) {
-                            File dir = new File(url.toURI());
-                            scanDirectory(dir, packageName, classes);
-                        }
-                    }
-                } catch (Exception e) {
-                    log.debug("Error scanning package: {}", packageName, e);
-                }
+        classpathIndex.refreshClasses(changedFiles);
+        Set<String> currentControllers = new HashSet<>(findControllerClasses().keySet());
+
+        // Пересканировать нужно контроллеры, которые есть сейчас или были до изменения
+        Set<String> changedClasses = new HashSet<>();
+        for (String className : changedFiles) {
+            if (currentControllers.contains(className) || knownControllers.contains(className)) {
+                changedClasses.add(className);
+                log.debug("Detected change in controller: {}", className);
             }
-        } catch (Exception e) {
-            log.debug("Error finding controller classes", e);
         }
-        return classes;
+        knownControllers = currentControllers;
+        return changedClasses;
     }
 
     /**
-     * Сканирует директорию и находит классы контроллеров
+     * Читает время модификации class-файлов в директориях classpath, не заходя в пакеты,
+     * в которых не ищутся контроллеры. Вложенные классы относятся к внешнему классу.
      */
-    private void scanDirectory(File dir, String packageName, Set<String> classes) {
-        if (!dir.exists() || !dir.isDirectory()) {
-            return;
-        }
-
-        File[] files = dir.listFiles();
-        if (files == null) {
-            return;
-        }
+    private Map<String, Long> readClassFileTimes() {
+        Map<String, Long> times = new HashMap<>();
+        for (Path root : classpathIndex.findDirectoryRoots()) {
+            try {
+                Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        if (!dir.equals(root) && classpathIndex.canSkipPackage(
+                                root.relativize(dir).toString().replace(File.separatorChar, '.'))) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
 
-        for (File file : files) {
-            if (file.isDirectory()) {
-                scanDirectory(file, packageName + "." + file.getName(), classes);
-            } else if (file.getName().endsWith(".class")) {
-                String className = packageName + "." + file.getName().replace(".class", "");
-                try {
-                    Class<?> clazz = Class.forName(className);
-                    if (clazz.isAnnotationPresent(org.springframework.web.bind.annotation.RestController.class)) {
-                        classes.add(className);
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        String className = toClassName(root, file);
+                        if (className != null && classpathIndex.acceptsClass(className) &&
+                            controllerScanner.isInScanScope(className)) {
+                            times.merge(className, attrs.lastModifiedTime().toMillis(), Math::max);
+                        }
+                        return FileVisitResult.CONTINUE;
                     }
-                } catch (ClassNotFoundException e) {
-                    // Игнорируем
-                }
+                });
+            } catch (IOException e) {
+                log.debug("Error polling classpath directory {}: {}", root, e.getMessage());
             }
         }
+        return times;
     }
 
     /**
-     * Получает время модификации класса
+     * Находит все классы контроллеров через общий индекс classpath
+     * (в том же режиме, что и ControllerScanner)
      */
-    private long getClassModificationTime(String className) {
-        try {
-            Class<?> clazz = Class.forName(className);
-            String resourceName = className.replace('.', '/') + ".class";
-            URL resource = clazz.getClassLoader().getResource(resourceName);
-            
-            if (resource != null && "file".equals(resource.getProtocol())) {
-                try {
-                    File file = new File(resource.toURI());
-                    return file.lastModified();
-                } catch (Exception e) {
-                    // Игнорируем
-                }
-            }
-        } catch (ClassNotFoundException e) {
-            // Игнорируем
+    private Map<String, ClasspathIndex.ControllerEntry> findControllerClasses() {
+        Map<String, ClasspathIndex.ControllerEntry> classes = new HashMap<>();
+        for (ClasspathIndex.ControllerEntry entry : controllerScanner.findControllerEntries()) {
+            classes.put(entry.getClassName(), entry);
         }
-        return 0;
+        return classes;
     }
 
     /**
-     * Получает интервал опроса из конфигурации
+     * Имя класса по пути class-файла или null, если файл не class-файл
      */
-    private long getPollingInterval() {
-        // Значение по умолчанию 30 секунд
-        return 30000;
+    private static String toClassName(Path root, Path file) {
+        String relative = root.relativize(file).toString().replace(File.separatorChar, '.');
+        if (!relative.endsWith(".class")) {
+            return null;
+        }
+        String className = relative.substring(0, relative.length() - ".class".length());
+        int nested = className.indexOf('$');
+        return nested >= 0 ? className.substring(0, nested) : className;
     }
 }
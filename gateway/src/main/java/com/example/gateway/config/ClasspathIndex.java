@@ -0,0 +1,657 @@
+package com.example.gateway.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.SimpleMetadataReaderFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ResourceUtils;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * Общий индекс контроллеров в classpath.
+ * Единственное место, где выполняется обход classpath: ControllerScanner, AutoRescanService
+ * и ControllerFinder получают список контроллеров отсюда, а не сканируют classpath сами.
+ *
+ * Результаты кэшируются по корню сканирования (пакет или весь classpath) и живут
+ * до явной инвалидации через invalidate() или точечного обновления через refreshClasses().
+ *
+ * При сканировании всего classpath пакеты фильтруются через PackageFilter до чтения
+ * class-файлов: jar-файлы отбрасываются по манифесту или списку пакетов,
+ * директории исключенных пакетов не обходятся.
+ */
+@Component
+public class ClasspathIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ClasspathIndex.class);
+
+    private static final String ALL_CLASSPATH = "*";
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+    private final CachingMetadataReaderFactory metadataReaderFactory = new CachingMetadataReaderFactory(resolver);
+    // Без кэша: для чтения правил из текущего содержимого class-файлов
+    private final SimpleMetadataReaderFactory ruleReaderFactory = new SimpleMetadataReaderFactory(resolver);
+    private final PackageFilter packageFilter;
+
+    // Кэш: корень сканирования (имя пакета или "*" для всего classpath) -> найденные контроллеры
+    private final Map<String, List<ControllerEntry>> index = new ConcurrentHashMap<>();
+
+    private volatile ScanStatistics lastScanStatistics = new ScanStatistics(0, 0, 0, 0, 0, 0, 0);
+
+    /**
+     * Индекс с фильтром пакетов по умолчанию (для использования вне Spring)
+     */
+    public ClasspathIndex() {
+        this("", PackageFilter.DEFAULT_EXCLUDES);
+    }
+
+    @Autowired
+    public ClasspathIndex(@Value("${endpoint-scanner.include-packages:}") String includePackages,
+                          @Value("${endpoint-scanner.exclude-packages:" + PackageFilter.DEFAULT_EXCLUDES + "}") String excludePackages) {
+        this.packageFilter = PackageFilter.of(includePackages, excludePackages);
+    }
+
+    /**
+     * Возвращает контроллеры из указанного пакета (и его подпакетов)
+     */
+    public List<ControllerEntry> findControllers(String packageName) {
+        String root = packageName.trim();
+        return index.computeIfAbsent(root, this::scanPackage);
+    }
+
+    /**
+     * Возвращает контроллеры из нескольких пакетов, заданных через запятую
+     */
+    public List<ControllerEntry> findControllersInPackages(String packages) {
+        Map<String, ControllerEntry> result = new LinkedHashMap<>();
+        for (String packageName : packages.split(",")) {
+            if (packageName.isBlank()) {
+                continue;
+            }
+            for (ControllerEntry entry : findControllers(packageName)) {
+                result.putIfAbsent(entry.getClassName(), entry);
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Возвращает контроллеры из всего classpath
+     */
+    public List<ControllerEntry> findAllControllers() {
+        return index.computeIfAbsent(ALL_CLASSPATH, root -> scanAllClasspath());
+    }
+
+    /**
+     * Возвращает статистику последнего сканирования всего classpath
+     */
+    public ScanStatistics getLastScanStatistics() {
+        return lastScanStatistics;
+    }
+
+    /**
+     * Сбрасывает весь индекс. Следующий запрос заново прочитает classpath.
+     */
+    public void invalidate() {
+        index.clear();
+        metadataReaderFactory.clearCache();
+        log.debug("Classpath index invalidated");
+    }
+
+    /**
+     * Сбрасывает индекс для одного пакета
+     */
+    public void invalidate(String packageName) {
+        index.remove(packageName.trim());
+        // Полное сканирование classpath тоже могло содержать классы этого пакета
+        index.remove(ALL_CLASSPATH);
+        metadataReaderFactory.clearCache();
+        log.debug("Classpath index invalidated for package {}", packageName);
+    }
+
+    /**
+     * Обновляет записи индекса для отдельных классов без повторного обхода classpath.
+     * Class-файл каждого класса читается заново: контроллер добавляется или заменяется в индексе,
+     * а удаленный класс или класс без @RestController из индекса убирается.
+     */
+    public void refreshClasses(Collection<String> classNames) {
+        // Кэш метаданных хранит содержимое старых class-файлов
+        metadataReaderFactory.clearCache();
+        for (String className : classNames) {
+            Map<String, ControllerEntry> found = new HashMap<>();
+            Resource resource = resolver.getResource(
+                    ResourceUtils.CLASSPATH_URL_PREFIX + className.replace('.', '/') + CLASS_SUFFIX);
+            if (resource.exists()) {
+                readController(resource, found, new ScanCounters());
+            }
+            ControllerEntry entry = found.get(className);
+            index.replaceAll((root, entries) -> covers(root, className)
+                    ? replaceEntry(entries, className, entry)
+                    : entries);
+        }
+        log.debug("Classpath index refreshed for {} classes", classNames.size());
+    }
+
+    /**
+     * Читает правила контроллера из текущего class-файла, не загружая класс.
+     *
+     * Class.forName для уже загруженного класса возвращает старую версию, поэтому правила
+     * измененного контроллера берутся из метаданных class-файла. Файл читается в обход кэша
+     * метаданных и кэша jar-файлов JVM, так что замененный jar тоже читается заново.
+     *
+     * @return правила (METHOD:path -> тип аннотации) или null, если класса нет, он не проходит
+     *         фильтр пакетов или не является @RestController
+     * @throws UncheckedIOException если class-файл существует, но не читается
+     */
+    public Map<String, String> readEndpointRules(String className) {
+        return readEndpointRules(List.of(className)).get(className);
+    }
+
+    /**
+     * Читает правила нескольких контроллеров (см. readEndpointRules(String)). Каждый jar-файл
+     * открывается один раз на весь вызов, а не заново для каждого контроллера.
+     *
+     * @return правила по имени класса; классов, для которых readEndpointRules(String) вернул бы null, в результате нет
+     * @throws UncheckedIOException если class-файл существует, но не читается
+     */
+    public Map<String, Map<String, String>> readEndpointRules(Collection<String> classNames) {
+        Map<String, Map<String, String>> result = new HashMap<>();
+        // Jar-файлы, открытые в этом вызове: файл jar -> JarFile
+        Map<File, JarFile> openJars = new HashMap<>();
+        try {
+            for (String className : classNames) {
+                Map<String, String> rules = readEndpointRules(className, openJars);
+                if (rules != null) {
+                    result.put(className, rules);
+                }
+            }
+        } finally {
+            for (JarFile jarFile : openJars.values()) {
+                try {
+                    jarFile.close();
+                } catch (IOException e) {
+                    log.trace("Error closing jar {}: {}", jarFile.getName(), e.getMessage());
+                }
+            }
+        }
+        return result;
+    }
+
+    private Map<String, String> readEndpointRules(String className, Map<File, JarFile> openJars) {
+        Resource resource = resolver.getResource(
+                ResourceUtils.CLASSPATH_URL_PREFIX + className.replace('.', '/') + CLASS_SUFFIX);
+        if (!packageFilter.accepts(className) || !resource.exists()) {
+            return null;
+        }
+        try {
+            byte[] content = readClassFile(resource.getURL(), openJars);
+            AnnotationMetadata metadata = ruleReaderFactory
+                    .getMetadataReader(new ByteArrayResource(content, resource.getDescription()))
+                    .getAnnotationMetadata();
+            if (!metadata.hasAnnotation(RestController.class.getName())) {
+                return null;
+            }
+            return ControllerScanningUtils.findEndpointRules(metadata);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read class file of " + className, e);
+        }
+    }
+
+    /**
+     * Читает class-файл в обход кэша jar-файлов JVM. Запись jar-файла из файловой системы читается
+     * через JarFile, открытый один раз на вызов (openJars); остальное (директории, вложенные jar) -
+     * через соединение без кэша.
+     */
+    private static byte[] readClassFile(URL url, Map<File, JarFile> openJars) throws IOException {
+        if (ResourceUtils.isJarURL(url)) {
+            String path = url.getPath();
+            int separator = path.indexOf(ResourceUtils.JAR_URL_SEPARATOR);
+            String entryName = path.substring(separator + ResourceUtils.JAR_URL_SEPARATOR.length());
+            URL jarUrl = ResourceUtils.extractJarFileURL(url);
+            if (ResourceUtils.isFileURL(jarUrl) && !entryName.contains(ResourceUtils.JAR_URL_SEPARATOR)) {
+                File file = ResourceUtils.getFile(jarUrl);
+                JarFile jarFile = openJars.get(file);
+                if (jarFile == null) {
+                    jarFile = new JarFile(file, false);
+                    openJars.put(file, jarFile);
+                }
+                JarEntry entry = jarFile.getJarEntry(entryName);
+                if (entry == null) {
+                    throw new FileNotFoundException(entryName + " not found in " + file);
+                }
+                try (InputStream input = jarFile.getInputStream(entry)) {
+                    return input.readAllBytes();
+                }
+            }
+        }
+        URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+        try (InputStream input = connection.getInputStream()) {
+            return input.readAllBytes();
+        }
+    }
+
+    /**
+     * Возвращает директории классов в classpath (jar-файлы не включаются)
+     */
+    public List<Path> findDirectoryRoots() {
+        List<Path> roots = new ArrayList<>();
+        try {
+            for (Resource root : resolver.getResources("classpath*:")) {
+                if (ResourceUtils.isFileURL(root.getURL()) && root.getFile().isDirectory()) {
+                    roots.add(root.getFile().toPath());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Error listing classpath directories: {}", e.getMessage());
+        }
+        return roots;
+    }
+
+    /**
+     * Возвращает jar-файлы из classpath
+     */
+    public List<Path> findJarRoots() {
+        List<Path> roots = new ArrayList<>();
+        try {
+            for (Resource root : resolver.getResources("classpath*:")) {
+                URL url = root.getURL();
+                if (ResourceUtils.isFileURL(url) && root.getFile().getName().endsWith(".jar")) {
+                    roots.add(root.getFile().toPath());
+                } else if (ResourceUtils.isJarURL(url)) {
+                    URL jarUrl = ResourceUtils.extractJarFileURL(url);
+                    if (ResourceUtils.isFileURL(jarUrl)) {
+                        roots.add(ResourceUtils.getFile(jarUrl).toPath());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Error listing classpath jars: {}", e.getMessage());
+        }
+        return roots;
+    }
+
+    /**
+     * Проверяет, можно ли не рассматривать пакет вместе с подпакетами (по фильтру пакетов)
+     */
+    public boolean canSkipPackage(String packageName) {
+        return packageFilter.canSkipSubtree(packageName);
+    }
+
+    /**
+     * Проверяет, проходит ли класс фильтр пакетов
+     */
+    public boolean acceptsClass(String className) {
+        return packageFilter.accepts(className);
+    }
+
+    private static boolean covers(String root, String className) {
+        return ALL_CLASSPATH.equals(root) || className.startsWith(root + ".");
+    }
+
+    private static List<ControllerEntry> replaceEntry(List<ControllerEntry> entries, String className, ControllerEntry entry) {
+        List<ControllerEntry> result = new ArrayList<>(entries.size() + 1);
+        for (ControllerEntry existing : entries) {
+            if (!existing.getClassName().equals(className)) {
+                result.add(existing);
+            }
+        }
+        if (entry != null) {
+            result.add(entry);
+        }
+        return List.copyOf(result);
+    }
+
+    private List<ControllerEntry> scanPackage(String packageName) {
+        String pattern = "classpath*:" + packageName.replace('.', '/') + "/**/*.class";
+        log.debug("Indexing controllers by pattern: {}", pattern);
+
+        try {
+            Map<String, ControllerEntry> controllers = new LinkedHashMap<>();
+            ScanCounters counters = new ScanCounters();
+            for (Resource resource : resolver.getResources(pattern)) {
+                readController(resource, controllers, counters);
+            }
+            log.debug("Indexed {} controllers in package {}", controllers.size(), packageName);
+            return List.copyOf(controllers.values());
+        } catch (Exception e) {
+            log.warn("Error indexing package {}: {}", packageName, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private List<ControllerEntry> scanAllClasspath() {
+        log.info("Indexing all controllers in classpath...");
+        long start = System.currentTimeMillis();
+        Map<String, ControllerEntry> controllers = new LinkedHashMap<>();
+        ScanCounters counters = new ScanCounters();
+
+        try {
+            // Корни classpath: директории классов и jar-файлы
+            for (Resource root : resolver.getResources("classpath*:")) {
+                try {
+                    scanRoot(root, controllers, counters);
+                } catch (Exception e) {
+                    log.debug("Error indexing classpath root {}: {}", root, e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error indexing all controllers in classpath", e);
+        }
+
+        ScanStatistics statistics = counters.toStatistics(controllers.size(), System.currentTimeMillis() - start);
+        lastScanStatistics = statistics;
+        log.info("Indexed {} controllers in classpath: {}", controllers.size(), statistics);
+        return List.copyOf(controllers.values());
+    }
+
+    private void scanRoot(Resource root, Map<String, ControllerEntry> controllers, ScanCounters counters) throws IOException {
+        URL url = root.getURL();
+        if (ResourceUtils.isFileURL(url)) {
+            File file = root.getFile();
+            if (file.isDirectory()) {
+                scanDirectoryRoot(file.toPath(), controllers, counters);
+            } else if (file.getName().endsWith(".jar")) {
+                scanJarRoot(new URL(ResourceUtils.JAR_URL_PREFIX + url + ResourceUtils.JAR_URL_SEPARATOR),
+                        controllers, counters);
+            } else {
+                counters.rootsSkipped++;
+            }
+        } else if (ResourceUtils.isJarURL(url)) {
+            scanJarRoot(url, controllers, counters);
+        } else {
+            counters.rootsSkipped++;
+        }
+    }
+
+    /**
+     * Сканирует директорию классов, не заходя в поддиректории исключенных пакетов
+     */
+    private void scanDirectoryRoot(Path rootPath, Map<String, ControllerEntry> controllers, ScanCounters counters) throws IOException {
+        int classesBefore = counters.classesRead;
+        Files.walkFileTree(rootPath, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(rootPath) && packageFilter.canSkipSubtree(toPackageName(rootPath.relativize(dir)))) {
+                    counters.directoriesPruned++;
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String relative = rootPath.relativize(file).toString().replace(File.separatorChar, '/');
+                if (isCandidateClassEntry(relative, counters)) {
+                    readController(new FileSystemResource(file), controllers, counters);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        countRoot(counters, classesBefore);
+    }
+
+    /**
+     * Сканирует jar-файл. Jar отбрасывается целиком, если имя модуля из манифеста исключено,
+     * иначе по списку пакетов из центрального каталога (без распаковки class-файлов).
+     */
+    private void scanJarRoot(URL rootUrl, Map<String, ControllerEntry> controllers, ScanCounters counters) throws IOException {
+        URLConnection connection = rootUrl.openConnection();
+        if (!(connection instanceof JarURLConnection jarConnection)) {
+            counters.rootsSkipped++;
+            return;
+        }
+        ResourceUtils.useCachesIfNecessary(jarConnection);
+        JarFile jarFile = jarConnection.getJarFile();
+        try {
+            String moduleName = findModuleName(jarFile.getManifest());
+            // Имя модуля не обязано совпадать с пакетами jar, поэтому jar отбрасывается
+            // только по явному exclude, а не из-за несовпадения с include
+            if (moduleName != null && packageFilter.isExcludedSubtree(moduleName)) {
+                counters.rootsSkipped++;
+                log.trace("Skipping jar {} (module {})", jarFile.getName(), moduleName);
+                return;
+            }
+
+            JarEntry rootEntry = jarConnection.getJarEntry();
+            String rootPath = rootEntry != null ? rootEntry.getName() : "";
+            if (!rootPath.isEmpty() && !rootPath.endsWith("/")) {
+                rootPath += "/";
+            }
+
+            int classesBefore = counters.classesRead;
+            for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
+                String entryName = entries.nextElement().getName();
+                if (!entryName.startsWith(rootPath)) {
+                    continue;
+                }
+                String relative = entryName.substring(rootPath.length());
+                if (isCandidateClassEntry(relative, counters)) {
+                    readController(new UrlResource(new URL(rootUrl, relative)),
+                            controllers, counters);
+                }
+            }
+            countRoot(counters, classesBefore);
+        } finally {
+            if (!jarConnection.getUseCaches()) {
+                jarFile.close();
+            }
+        }
+    }
+
+    /**
+     * Проверяет по имени записи, стоит ли читать class-файл
+     */
+    private boolean isCandidateClassEntry(String relativePath, ScanCounters counters) {
+        if (!relativePath.endsWith(CLASS_SUFFIX)) {
+            return false;
+        }
+        int lastSlash = relativePath.lastIndexOf('/');
+        String packagePath = lastSlash > 0 ? relativePath.substring(0, lastSlash) : "";
+        if (relativePath.startsWith("META-INF/") ||
+            relativePath.indexOf('$') >= 0 ||
+            relativePath.endsWith("module-info.class") ||
+            relativePath.endsWith("package-info.class") ||
+            !counters.packageDecisions.computeIfAbsent(packagePath, path -> packageFilter.accepts(path))) {
+            counters.entriesSkipped++;
+            return false;
+        }
+        return true;
+    }
+
+    private void readController(Resource resource, Map<String, ControllerEntry> controllers, ScanCounters counters) {
+        if (!resource.isReadable()) {
+            return;
+        }
+        counters.classesRead++;
+        try {
+            MetadataReader metadataReader = metadataReaderFactory.getMetadataReader(resource);
+            String className = metadataReader.getClassMetadata().getClassName();
+
+            if (packageFilter.accepts(className) &&
+                metadataReader.getAnnotationMetadata().hasAnnotation(RestController.class.getName())) {
+                controllers.putIfAbsent(className,
+                        new ControllerEntry(className, resource.getDescription(), resource.getURL().toString()));
+            }
+        } catch (Exception | LinkageError e) {
+            // Игнорируем нечитаемые ресурсы
+            log.trace("Skipping unreadable resource {}: {}", resource, e.getMessage());
+        }
+    }
+
+    private static void countRoot(ScanCounters counters, int classesBefore) {
+        if (counters.classesRead > classesBefore) {
+            counters.rootsScanned++;
+        } else {
+            counters.rootsSkipped++;
+        }
+    }
+
+    private static String findModuleName(Manifest manifest) {
+        if (manifest == null) {
+            return null;
+        }
+        Attributes attributes = manifest.getMainAttributes();
+        String moduleName = attributes.getValue("Automatic-Module-Name");
+        if (moduleName == null) {
+            moduleName = attributes.getValue("Bundle-SymbolicName");
+        }
+        if (moduleName == null) {
+            return null;
+        }
+        int semicolon = moduleName.indexOf(';');
+        return (semicolon >= 0 ? moduleName.substring(0, semicolon) : moduleName).trim();
+    }
+
+    private static String toPackageName(Path relativeDir) {
+        return relativeDir.toString().replace(File.separatorChar, '.');
+    }
+
+    /**
+     * Счетчики одного прохода по classpath
+     */
+    private static class ScanCounters {
+        private final Map<String, Boolean> packageDecisions = new HashMap<>();
+        private int rootsScanned;
+        private int rootsSkipped;
+        private int directoriesPruned;
+        private int entriesSkipped;
+        private int classesRead;
+
+        private ScanStatistics toStatistics(int controllersFound, long durationMs) {
+            return new ScanStatistics(rootsScanned, rootsSkipped, directoriesPruned, entriesSkipped,
+                    classesRead, controllersFound, durationMs);
+        }
+    }
+
+    /**
+     * Статистика сканирования всего classpath
+     */
+    public static class ScanStatistics {
+        private final int rootsScanned;
+        private final int rootsSkipped;
+        private final int directoriesPruned;
+        private final int entriesSkipped;
+        private final int classesRead;
+        private final int controllersFound;
+        private final long durationMs;
+
+        public ScanStatistics(int rootsScanned, int rootsSkipped, int directoriesPruned, int entriesSkipped,
+                              int classesRead, int controllersFound, long durationMs) {
+            this.rootsScanned = rootsScanned;
+            this.rootsSkipped = rootsSkipped;
+            this.directoriesPruned = directoriesPruned;
+            this.entriesSkipped = entriesSkipped;
+            this.classesRead = classesRead;
+            this.controllersFound = controllersFound;
+            this.durationMs = durationMs;
+        }
+
+        public int getRootsScanned() {
+            return rootsScanned;
+        }
+
+        public int getRootsSkipped() {
+            return rootsSkipped;
+        }
+
+        public int getDirectoriesPruned() {
+            return directoriesPruned;
+        }
+
+        public int getEntriesSkipped() {
+            return entriesSkipped;
+        }
+
+        public int getClassesRead() {
+            return classesRead;
+        }
+
+        public int getControllersFound() {
+            return controllersFound;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        @Override
+        public String toString() {
+            return rootsScanned + " roots scanned, " + rootsSkipped + " roots skipped, " +
+                   directoriesPruned + " directories pruned, " + entriesSkipped + " entries skipped, " +
+                   classesRead + " classes read in " + durationMs + " ms";
+        }
+    }
+
+    /**
+     * Запись индекса: контроллер и место, откуда прочитан его class-файл
+     */
+    public static class ControllerEntry {
+        private final String className;
+        private final String resourceLocation;
+        private final String resourceUrl;
+
+        public ControllerEntry(String className, String resourceLocation, String resourceUrl) {
+            this.className = className;
+            this.resourceLocation = resourceLocation;
+            this.resourceUrl = resourceUrl;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getResourceLocation() {
+            return resourceLocation;
+        }
+
+        public String getResourceUrl() {
+            return resourceUrl;
+        }
+
+        /**
+         * Загружает класс контроллера. Возвращает null, если класс недоступен.
+         * Для уже загруженного класса возвращается прежняя версия, даже если class-файл изменился;
+         * актуальные правила контроллера дает ClasspathIndex.readEndpointRules().
+         */
+        public Class<?> loadClass() {
+            try {
+                return Class.forName(className);
+            } catch (ClassNotFoundException | LinkageError e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return className + " (" + resourceLocation + ")";
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.gateway.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Отслеживает изменения class-файлов контроллеров через WatchService.
+ * Наблюдает за директориями классов в classpath (выходные директории сборки и модулей)
+ * и пересканирует только затронутые классы, без периодического обхода classpath.
+ *
+ * События собираются в пачку: пересканирование запускается, когда в течение
+ * gateway.auto-rescan.watch.debounce-ms не было новых событий (например, после
+ * окончания компиляции модуля).
+ *
+ * Файловые системы, которые не доставляют события (сетевые и общие папки виртуальных машин),
+ * не отслеживаются - для них AutoRescanService продолжает периодический опрос.
+ */
+@Service
+@ConditionalOnProperty(name = "gateway.auto-rescan.enabled", havingValue = "true", matchIfMissing = false)
+public class ControllerChangeWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ControllerChangeWatcher.class);
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final ControllerScanner controllerScanner;
+    private final ClasspathIndex classpathIndex;
+    private final RescanCoordinator rescanCoordinator;
+
+    // Зарегистрированная директория -> корень classpath, от которого считается имя пакета
+    private final Map<WatchKey, WatchedDirectory> watchedDirectories = new ConcurrentHashMap<>();
+    // Классы, измененные с момента последнего пересканирования
+    private final Set<String> pendingClasses = new HashSet<>();
+
+    @Value("${gateway.auto-rescan.watch.enabled:true}")
+    private boolean watchEnabled;
+
+    @Value("${gateway.auto-rescan.watch.debounce-ms:500}")
+    private long debounceMs;
+
+    @Value("${gateway.auto-rescan.watch.unsupported-filesystems:nfs,nfs4,cifs,smbfs,smb3,9p,vboxsf,fuse.sshfs,fuse.vmhgfs-fuse,davfs}")
+    private Set<String> unsupportedFileSystems;
+
+    private WatchService watchService;
+    private Thread watcherThread;
+    private List<String> scanPackages = List.of();
+    private volatile boolean active = false;
+    private volatile int unwatchedRoots = 0;
+    private boolean fullRescanRequested = false;
+    private long firstPendingEventAt;
+    private long lastEventAt;
+
+    public ControllerChangeWatcher(ControllerScanner controllerScanner, ClasspathIndex classpathIndex,
+                                   RescanCoordinator rescanCoordinator) {
+        this.controllerScanner = controllerScanner;
+        this.classpathIndex = classpathIndex;
+        this.rescanCoordinator = rescanCoordinator;
+    }
+
+    @jakarta.annotation.PostConstruct
+    public void start() {
+        if (!watchEnabled || controllerScanner.isUsingPrecomputedRules()) {
+            return;
+        }
+        scanPackages = controllerScanner.getScanPackages();
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            int unwatched = 0;
+            for (Path root : classpathIndex.findDirectoryRoots()) {
+                if (!deliversEvents(root)) {
+                    unwatched++;
+                    log.info("File system of {} does not deliver change events, it will be polled", root);
+                    continue;
+                }
+                registerTree(root, root, null);
+            }
+            unwatchedRoots = unwatched;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("WatchService is not available, falling back to polling: {}", e.getMessage());
+            closeWatchService();
+            return;
+        }
+
+        if (watchedDirectories.isEmpty()) {
+            log.info("No classpath directories to watch, falling back to polling");
+            closeWatchService();
+            return;
+        }
+
+        watcherThread = new Thread(this::watchLoop, "controller-change-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        active = true;
+        log.info("Watching {} directories for controller changes (debounce {} ms)",
+                watchedDirectories.size(), debounceMs);
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void stop() {
+        active = false;
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+        }
+        closeWatchService();
+    }
+
+    /**
+     * Возвращает true, если часть изменений нельзя получить через события
+     * и AutoRescanService должен продолжать опрос
+     */
+    public boolean isPollingRequired() {
+        return !active || unwatchedRoots > 0;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public int getWatchedDirectoryCount() {
+        return watchedDirectories.size();
+    }
+
+    private void watchLoop() {
+        while (active && !Thread.currentThread().isInterrupted()) {
+            try {
+                WatchKey key;
+                if (hasPendingChanges()) {
+                    key = watchService.poll(debounceMs, TimeUnit.MILLISECONDS);
+                } else {
+                    key = watchService.take();
+                }
+                if (key != null) {
+                    processEvents(key);
+                }
+                if (hasPendingChanges() && isDebounceElapsed()) {
+                    flush();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Error while processing controller change events", e);
+            }
+        }
+    }
+
+    private void processEvents(WatchKey key) {
+        WatchedDirectory directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || directory == null) {
+                // События потеряны - состояние директорий неизвестно
+                markEvent();
+                fullRescanRequested = true;
+                continue;
+            }
+            Path changed = directory.path.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed)) {
+                // Новый пакет: регистрируем его и учитываем уже созданные в нем файлы
+                markEvent();
+                try {
+                    registerTree(directory.root, changed, pendingClasses);
+                } catch (IOException e) {
+                    log.debug("Cannot watch new directory {}: {}", changed, e.getMessage());
+                    fullRescanRequested = true;
+                }
+            } else if (changed.getFileName().toString().endsWith(CLASS_SUFFIX)) {
+                String className = toClassName(directory.root, changed);
+                if (controllerScanner.isInScanScope(className)) {
+                    markEvent();
+                    pendingClasses.add(className);
+                }
+            }
+        }
+        if (!key.reset()) {
+            // Директория удалена; классы из нее уже попали в pendingClasses через ENTRY_DELETE
+            watchedDirectories.remove(key);
+        }
+    }
+
+    /**
+     * Пересканирует накопленные изменения одной пачкой
+     */
+    private void flush() {
+        Set<String> changedClasses = new HashSet<>(pendingClasses);
+        boolean fullRescan = fullRescanRequested;
+        pendingClasses.clear();
+        fullRescanRequested = false;
+
+        if (fullRescan) {
+            log.info("Controller change events were lost. Requesting full rescan...");
+            classpathIndex.invalidate();
+            rescanCoordinator.requestFullRescan();
+        } else if (!changedClasses.isEmpty()) {
+            log.info("Detected changes in {} classes. Requesting rescan of changed controllers...", changedClasses.size());
+            rescanCoordinator.requestRescan(changedClasses);
+        }
+    }
+
+    private void markEvent() {
+        long now = System.currentTimeMillis();
+        if (!hasPendingChanges()) {
+            firstPendingEventAt = now;
+        }
+        lastEventAt = now;
+    }
+
+    private boolean hasPendingChanges() {
+        return fullRescanRequested || !pendingClasses.isEmpty();
+    }
+
+    private boolean isDebounceElapsed() {
+        long now = System.currentTimeMillis();
+        // При непрерывном потоке событий не откладываем пересканирование бесконечно
+        return now - lastEventAt >= debounceMs || now - firstPendingEventAt >= debounceMs * 10;
+    }
+
+    /**
+     * Регистрирует директорию и ее поддиректории, пропуская пакеты, в которых не ищутся контроллеры.
+     * Если передан foundClasses, в него добавляются уже существующие class-файлы.
+     */
+    private void registerTree(Path root, Path start, Set<String> foundClasses) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(root) && !isRelevantPackage(toPackageName(root.relativize(dir)))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                watchedDirectories.put(key, new WatchedDirectory(root, dir));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (foundClasses != null && file.getFileName().toString().endsWith(CLASS_SUFFIX)) {
+                    String className = toClassName(root, file);
+                    if (controllerScanner.isInScanScope(className)) {
+                        foundClasses.add(className);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Пакет нужен, если в нем или в его подпакетах могут быть контроллеры
+     */
+    private boolean isRelevantPackage(String packageName) {
+        if (classpathIndex.canSkipPackage(packageName)) {
+            return false;
+        }
+        if (scanPackages.isEmpty()) {
+            return true;
+        }
+        for (String scanPackage : scanPackages) {
+            if (scanPackage.equals(packageName) || scanPackage.startsWith(packageName + ".") ||
+                packageName.startsWith(scanPackage + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean deliversEvents(Path root) {
+        try {
+            return !unsupportedFileSystems.contains(Files.getFileStore(root).type());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // Игнорируем
+            }
+        }
+    }
+
+    /**
+     * Имя класса по пути class-файла. Вложенные классы относятся к внешнему классу,
+     * так как правила авторизации читаются из методов внешнего класса.
+     */
+    private static String toClassName(Path root, Path classFile) {
+        String relative = root.relativize(classFile).toString().replace(File.separatorChar, '.');
+        String className = relative.substring(0, relative.length() - CLASS_SUFFIX.length());
+        int nested = className.indexOf('$');
+        return nested >= 0 ? className.substring(0, nested) : className;
+    }
+
+    private static String toPackageName(Path relativeDir) {
+        return relativeDir.toString().replace(File.separatorChar, '.');
+    }
+
+    /**
+     * Отслеживаемая директория и корень classpath, которому она принадлежит
+     */
+    private static class WatchedDirectory {
+        private final Path root;
+        private final Path path;
+
+        private WatchedDirectory(Path root, Path path) {
+            this.root = root;
+            this.path = path;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.gateway.config;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -18,6 +19,29 @@ import java.util.stream.Collectors;
 @RequestMapping("/diagnostic")
 public class ControllerDiagnosticController {
 
+    private final ClasspathIndex classpathIndex;
+    private final StartupTimeline startupTimeline;
+    private final RescanCoordinator rescanCoordinator;
+    private final ObjectProvider<AutoRescanService> autoRescanService;
+    private final EndpointRegistrationService registrationService;
+    private final RemoteModuleScanner remoteModuleScanner;
+    private final ObjectProvider<RemoteEndpointResolver> remoteResolver;
+
+    public ControllerDiagnosticController(ClasspathIndex classpathIndex, StartupTimeline startupTimeline,
+                                          RescanCoordinator rescanCoordinator,
+                                          ObjectProvider<AutoRescanService> autoRescanService,
+                                          EndpointRegistrationService registrationService,
+                                          RemoteModuleScanner remoteModuleScanner,
+                                          ObjectProvider<RemoteEndpointResolver> remoteResolver) {
+        this.classpathIndex = classpathIndex;
+        this.startupTimeline = startupTimeline;
+        this.rescanCoordinator = rescanCoordinator;
+        this.autoRescanService = autoRescanService;
+        this.registrationService = registrationService;
+        this.remoteModuleScanner = remoteModuleScanner;
+        this.remoteResolver = remoteResolver;
+    }
+
     /**
      * Находит контроллеры в указанном пакете
      * GET /diagnostic/find?package=com.example.moduleA.controller
@@ -27,7 +51,7 @@ public class ControllerDiagnosticController {
         Map<String, Object> result = new HashMap<>();
         
         try {
-            List<ControllerFinder.ControllerInfo> controllers = ControllerFinder.findControllers(packageName);
+            List<ControllerFinder.ControllerInfo> controllers = ControllerFinder.findControllers(classpathIndex, packageName);
             
             result.put("success", true);
             result.put("package", packageName);
@@ -59,7 +83,7 @@ public class ControllerDiagnosticController {
         Map<String, Object> result = new HashMap<>();
         
         try {
-            List<ControllerFinder.ControllerInfo> controllers = ControllerFinder.findAllControllers();
+            List<ControllerFinder.ControllerInfo> controllers = ControllerFinder.findAllControllers(classpathIndex);
             
             result.put("success", true);
             result.put("count", controllers.size());
@@ -80,4 +104,74 @@ public class ControllerDiagnosticController {
         
         return result;
     }
+
+    /**
+     * Статистика последнего сканирования всего classpath
+     * GET /diagnostic/index-stats
+     */
+    @GetMapping("/index-stats")
+    public Map<String, Object> getIndexStatistics() {
+        ClasspathIndex.ScanStatistics statistics = classpathIndex.getLastScanStatistics();
+        Map<String, Object> result = new HashMap<>();
+        result.put("rootsScanned", statistics.getRootsScanned());
+        result.put("rootsSkipped", statistics.getRootsSkipped());
+        result.put("directoriesPruned", statistics.getDirectoriesPruned());
+        result.put("entriesSkipped", statistics.getEntriesSkipped());
+        result.put("classesRead", statistics.getClassesRead());
+        result.put("controllersFound", statistics.getControllersFound());
+        result.put("durationMs", statistics.getDurationMs());
+        return result;
+    }
+
+    /**
+     * Хронология старта: время до первого решения авторизации и длительность фаз
+     * GET /diagnostic/startup
+     */
+    @GetMapping("/startup")
+    public Map<String, Object> getStartupTimeline() {
+        return startupTimeline.getTimeline();
+    }
+
+    /**
+     * Статистика пересканирований: длительность, глубина очереди, объединенные запросы
+     * GET /diagnostic/rescan
+     */
+    @GetMapping("/rescan")
+    public Map<String, Object> getRescanStatistics() {
+        return rescanCoordinator.getStatistics();
+    }
+
+    /**
+     * Адаптивный интервал проверки изменений: текущее значение, границы и нагрузка
+     * GET /diagnostic/auto-rescan
+     */
+    @GetMapping("/auto-rescan")
+    public Map<String, Object> getAutoRescanStatistics() {
+        AutoRescanService service = autoRescanService.getIfAvailable();
+        if (service == null) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("enabled", false);
+            return result;
+        }
+        Map<String, Object> result = new HashMap<>(service.getSchedulingStatistics());
+        result.put("enabled", true);
+        return result;
+    }
+
+    /**
+     * Версии списков эндпоинтов удаленных модулей, количество правил в слоях и состояние опроса модулей
+     * GET /diagnostic/remote-modules
+     */
+    @GetMapping("/remote-modules")
+    public Map<String, Object> getRemoteModules() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("versions", registrationService.getModuleVersions());
+        result.put("layers", registrationService.getLayerSizes());
+        result.put("modules", remoteModuleScanner.getModuleStatus());
+        RemoteEndpointResolver resolver = remoteResolver.getIfAvailable();
+        if (resolver != null) {
+            result.put("readThrough", resolver.getStatistics());
+        }
+        return result;
+    }
 }
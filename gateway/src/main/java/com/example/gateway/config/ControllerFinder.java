@@ -2,23 +2,22 @@ package com.example.gateway.config;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
-import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
-import org.springframework.core.type.classreading.MetadataReader;
-import org.springframework.core.type.classreading.MetadataReaderFactory;
-import org.springframework.web.bind.annotation.RestController;
 
 import java.util.*;
 
 /**
  * Простой утилитный класс для поиска и вывода контроллеров в указанном модуле/пакете.
  * Можно использовать для диагностики проблем с поиском контроллеров.
+ * Контроллеры берутся из ClasspathIndex: внутри приложения - из общего индекса,
+ * при запуске вне Spring - из собственного экземпляра индекса.
  */
 public class ControllerFinder {
 
     private static final Logger log = LoggerFactory.getLogger(ControllerFinder.class);
 
+    // Индекс для использования вне Spring-контекста (например, из main())
+    private static volatile ClasspathIndex standaloneIndex;
+
     /**
      * Находит все контроллеры в указанном пакете
      * 
@@ -26,49 +25,31 @@ public class ControllerFinder {
      * @return список найденных контроллеров
      */
     public static List<ControllerInfo> findControllers(String packageName) {
+        return findControllers(getStandaloneIndex(), packageName);
+    }
+
+    /**
+     * Находит все контроллеры в указанном пакете, используя переданный индекс classpath
+     * 
+     * @param classpathIndex общий индекс classpath приложения
+     * @param packageName имя пакета для поиска (например, "com.example.moduleA.controller")
+     * @return список найденных контроллеров
+     */
+    public static List<ControllerInfo> findControllers(ClasspathIndex classpathIndex, String packageName) {
         List<ControllerInfo> controllers = new ArrayList<>();
         
         try {
-            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-            MetadataReaderFactory metadataReaderFactory = new CachingMetadataReaderFactory(resolver);
-            
-            String packagePath = packageName.replace('.', '/');
-            String pattern = "classpath*:" + packagePath + "/**/*.class";
-            
             System.out.println("========================================");
             System.out.println("Поиск контроллеров в пакете: " + packageName);
-            System.out.println("Паттерн поиска: " + pattern);
             System.out.println("========================================");
             
-            Resource[] resources = resolver.getResources(pattern);
-            System.out.println("Найдено ресурсов: " + resources.length);
-            
-            for (Resource resource : resources) {
-                if (resource.isReadable()) {
-                    try {
-                        MetadataReader metadataReader = metadataReaderFactory.getMetadataReader(resource);
-                        String className = metadataReader.getClassMetadata().getClassName();
-                        
-                        System.out.println("Проверка класса: " + className);
-                        
-                        if (metadataReader.getAnnotationMetadata().hasAnnotation(RestController.class.getName())) {
-                            try {
-                                Class<?> clazz = Class.forName(className);
-                                ControllerInfo info = new ControllerInfo();
-                                info.className = className;
-                                info.simpleName = clazz.getSimpleName();
-                                info.packageName = clazz.getPackage() != null ? clazz.getPackage().getName() : "";
-                                info.resourceLocation = resource.getDescription();
-                                controllers.add(info);
-                                
-                                System.out.println("✓ НАЙДЕН КОНТРОЛЛЕР: " + className);
-                            } catch (ClassNotFoundException | NoClassDefFoundError e) {
-                                System.out.println("✗ Не удалось загрузить класс: " + className + " - " + e.getMessage());
-                            }
-                        }
-                    } catch (Exception e) {
-                        System.out.println("✗ Ошибка при чтении ресурса: " + resource + " - " + e.getMessage());
-                    }
+            for (ClasspathIndex.ControllerEntry entry : classpathIndex.findControllers(packageName)) {
+                ControllerInfo info = toControllerInfo(entry);
+                if (info != null) {
+                    controllers.add(info);
+                    System.out.println("✓ НАЙДЕН КОНТРОЛЛЕР: " + info.className);
+                } else {
+                    System.out.println("✗ Не удалось загрузить класс: " + entry.getClassName());
                 }
             }
             
@@ -104,64 +85,29 @@ public class ControllerFinder {
      * Находит все контроллеры во всем classpath
      */
     public static List<ControllerInfo> findAllControllers() {
+        return findAllControllers(getStandaloneIndex());
+    }
+
+    /**
+     * Находит все контроллеры во всем classpath, используя переданный индекс classpath
+     */
+    public static List<ControllerInfo> findAllControllers(ClasspathIndex classpathIndex) {
         List<ControllerInfo> controllers = new ArrayList<>();
         
         try {
-            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-            MetadataReaderFactory metadataReaderFactory = new CachingMetadataReaderFactory(resolver);
-            
-            String pattern = "classpath*:**/*.class";
-            
             System.out.println("========================================");
             System.out.println("Поиск ВСЕХ контроллеров в classpath");
-            System.out.println("Паттерн поиска: " + pattern);
             System.out.println("========================================");
             
-            Resource[] resources = resolver.getResources(pattern);
-            System.out.println("Найдено ресурсов: " + resources.length);
-            
-            int checked = 0;
-            for (Resource resource : resources) {
-                if (resource.isReadable()) {
-                    try {
-                        MetadataReader metadataReader = metadataReaderFactory.getMetadataReader(resource);
-                        String className = metadataReader.getClassMetadata().getClassName();
-                        
-                        // Пропускаем системные классы
-                        if (className.startsWith("org.springframework") ||
-                            className.startsWith("org.apache") ||
-                            className.startsWith("java.") ||
-                            className.startsWith("javax.") ||
-                            className.startsWith("jakarta.") ||
-                            className.contains("$")) {
-                            continue;
-                        }
-                        
-                        checked++;
-                        
-                        if (metadataReader.getAnnotationMetadata().hasAnnotation(RestController.class.getName())) {
-                            try {
-                                Class<?> clazz = Class.forName(className);
-                                ControllerInfo info = new ControllerInfo();
-                                info.className = className;
-                                info.simpleName = clazz.getSimpleName();
-                                info.packageName = clazz.getPackage() != null ? clazz.getPackage().getName() : "";
-                                info.resourceLocation = resource.getDescription();
-                                controllers.add(info);
-                                
-                                System.out.println("✓ НАЙДЕН КОНТРОЛЛЕР: " + className);
-                            } catch (ClassNotFoundException | NoClassDefFoundError e) {
-                                // Игнорируем
-                            }
-                        }
-                    } catch (Exception e) {
-                        // Игнорируем ошибки чтения
-                    }
+            for (ClasspathIndex.ControllerEntry entry : classpathIndex.findAllControllers()) {
+                ControllerInfo info = toControllerInfo(entry);
+                if (info != null) {
+                    controllers.add(info);
+                    System.out.println("✓ НАЙДЕН КОНТРОЛЛЕР: " + info.className);
                 }
             }
             
             System.out.println("========================================");
-            System.out.println("Проверено классов: " + checked);
             System.out.println("ИТОГО найдено контроллеров: " + controllers.size());
             System.out.println("========================================");
             
@@ -183,6 +129,36 @@ public class ControllerFinder {
         return controllers;
     }
 
+    /**
+     * Преобразует запись индекса в ControllerInfo. Возвращает null, если класс не загружается.
+     */
+    private static ControllerInfo toControllerInfo(ClasspathIndex.ControllerEntry entry) {
+        Class<?> clazz = entry.loadClass();
+        if (clazz == null) {
+            return null;
+        }
+        ControllerInfo info = new ControllerInfo();
+        info.className = entry.getClassName();
+        info.simpleName = clazz.getSimpleName();
+        info.packageName = clazz.getPackage() != null ? clazz.getPackage().getName() : "";
+        info.resourceLocation = entry.getResourceLocation();
+        return info;
+    }
+
+    private static ClasspathIndex getStandaloneIndex() {
+        ClasspathIndex index = standaloneIndex;
+        if (index == null) {
+            synchronized (ControllerFinder.class) {
+                index = standaloneIndex;
+                if (index == null) {
+                    index = new ClasspathIndex();
+                    standaloneIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
     /**
      * Информация о найденном контроллере
      */
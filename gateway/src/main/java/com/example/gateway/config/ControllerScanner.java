@@ -4,23 +4,18 @@ import com.example.gateway.config.ControllerScanningUtils;
 import com.example.gateway.security.CustomAuthorizationManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
-import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
-import org.springframework.core.type.classreading.MetadataReader;
-import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.server.authorization.AuthorizationContext;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 import org.springframework.security.authorization.AuthorizationDecision;
 
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 
 /**
@@ -34,6 +29,13 @@ public class ControllerScanner implements CommandLineRunner {
 
     private final CustomAuthorizationManager authorizationManager;
     private final EndpointAuthorizationRegistry endpointRegistry;
+    private final ClasspathIndex classpathIndex;
+    private final ObjectProvider<PrecomputedEndpointRules> precomputedRules;
+    private final StartupTimeline startupTimeline;
+    private final ObjectProvider<RescanCoordinator> rescanCoordinator;
+    
+    // Правила, зарегистрированные каждым контроллером: класс -> (ключ эндпоинта -> тип аннотации)
+    private final Map<String, Map<String, String>> rulesByController = new ConcurrentHashMap<>();
     
     @Value("${endpoint-scanner.scan-packages:com.example.moduleA.controller,com.example.moduleB.controller}")
     private String scanPackages;
@@ -42,39 +44,77 @@ public class ControllerScanner implements CommandLineRunner {
     private boolean autoScanAll;
 
     public ControllerScanner(CustomAuthorizationManager authorizationManager,
-                             EndpointAuthorizationRegistry endpointRegistry) {
+                             EndpointAuthorizationRegistry endpointRegistry,
+                             ClasspathIndex classpathIndex,
+                             ObjectProvider<PrecomputedEndpointRules> precomputedRules,
+                             StartupTimeline startupTimeline,
+                             ObjectProvider<RescanCoordinator> rescanCoordinator) {
         this.authorizationManager = authorizationManager;
         this.endpointRegistry = endpointRegistry;
+        this.classpathIndex = classpathIndex;
+        this.precomputedRules = precomputedRules;
+        this.startupTimeline = startupTimeline;
+        this.rescanCoordinator = rescanCoordinator;
     }
 
     @Override
     public void run(String... args) throws Exception {
-        rescan();
+        long start = System.currentTimeMillis();
+        // Сканирование выполняется через координатор, чтобы не пересечься с пересканированием
+        // по изменениям файлов, которое может начаться до завершения старта
+        rescanCoordinator.getObject().rescanAndWait();
+        startupTimeline.recordPhase(StartupTimeline.CONTROLLER_SCAN, System.currentTimeMillis() - start);
     }
 
     /**
      * Пересканирует контроллеры и обновляет правила авторизации.
      * Может быть вызван вручную при обновлении модулей во время работы приложения.
+     * 
+     * В реестре меняются только правила контроллеров, у которых что-то изменилось;
+     * правила удаленных модулей и неизмененных контроллеров не затрагиваются.
      */
-    public void rescan() {
+    public synchronized void rescan() {
+        PrecomputedEndpointRules precomputed = precomputedRules.getIfAvailable();
+        if (precomputed != null) {
+            // Правила построены на этапе AOT - classpath не сканируем
+            log.info("Using {} authorization rules precomputed at build time", precomputed.size());
+            applyControllerRules(new HashMap<>(precomputed.getRulesByController()));
+            endpointRegistry.printAllEndpoints();
+            return;
+        }
+
         log.info("Starting controller rescan...");
-        Set<Class<?>> controllers;
-        
         if (autoScanAll) {
-            log.info("Using automatic classpath scanning (scanAllControllersInClasspath)");
-            controllers = scanAllControllersInClasspath();
+            log.info("Using automatic classpath scanning (findAllControllers)");
         } else {
-            log.info("Using configured package scanning (scanControllers)");
-            controllers = scanControllers();
+            log.info("Using configured package scanning: {}", scanPackages);
         }
-        if (!controllers.isEmpty()) {
-            // Очищаем старые правила перед пересканированием
-            endpointRegistry.clear();
-            initializeAuthorizationRules(controllers);
-            log.info("Rescan completed. Registered {} authorization rules", endpointRegistry.size());
-            // Выводим все зарегистрированные эндпоинты в консоль
-            endpointRegistry.printAllEndpoints();
-        } else {
+
+        // Правила читаются из class-файлов: загруженный ранее класс не отражает изменений.
+        // Все контроллеры читаются одним вызовом, чтобы каждый jar открывался один раз
+        List<String> classNames = new ArrayList<>();
+        for (ClasspathIndex.ControllerEntry entry : findControllerEntries()) {
+            classNames.add(entry.getClassName());
+        }
+        Map<String, Map<String, String>> scannedRules = new HashMap<>(classpathIndex.readEndpointRules(classNames));
+        for (String className : classNames) {
+            if (scannedRules.containsKey(className)) {
+                log.info("✓ Found controller: {}", className);
+            }
+        }
+        boolean controllersFound = !scannedRules.isEmpty();
+
+        // Контроллеры, которые пропали из classpath, теряют свои правила
+        for (String className : rulesByController.keySet()) {
+            scannedRules.putIfAbsent(className, Collections.emptyMap());
+        }
+        int changed = applyControllerRules(scannedRules);
+        log.info("Rescan completed. {} controllers changed, {} authorization rules registered", 
+                changed, endpointRegistry.size());
+        // Выводим все зарегистрированные эндпоинты в консоль
+        endpointRegistry.printAllEndpoints();
+
+        if (!controllersFound) {
             log.warn("No controllers found!");
             log.warn("Configured scan packages: {}", scanPackages);
             log.warn("Please check:");
@@ -85,6 +125,95 @@ public class ControllerScanner implements CommandLineRunner {
         }
     }
 
+    /**
+     * Пересканирует только указанные классы контроллеров.
+     * Правила измененных и новых классов читаются из их текущих class-файлов (уже загруженный
+     * класс отражал бы старую версию), для удаленных классов правила снимаются.
+     * Стоимость пропорциональна числу измененных эндпоинтов.
+     * 
+     * @param classNames имена измененных, добавленных или удаленных классов
+     */
+    public synchronized void rescanClasses(Set<String> classNames) {
+        if (classNames.isEmpty()) {
+            return;
+        }
+        if (isUsingPrecomputedRules()) {
+            log.debug("Authorization rules are precomputed at build time, ignoring rescan of {} classes", classNames.size());
+            return;
+        }
+        
+        Map<String, ClasspathIndex.ControllerEntry> currentControllers = new HashMap<>();
+        for (ClasspathIndex.ControllerEntry entry : findControllerEntries()) {
+            currentControllers.put(entry.getClassName(), entry);
+        }
+        
+        List<String> present = new ArrayList<>();
+        for (String className : classNames) {
+            if (currentControllers.containsKey(className)) {
+                present.add(className);
+            }
+        }
+        Map<String, Map<String, String>> scannedRules = new HashMap<>(classpathIndex.readEndpointRules(present));
+        for (String className : classNames) {
+            scannedRules.putIfAbsent(className, Collections.emptyMap());
+        }
+        
+        int changed = applyControllerRules(scannedRules);
+        log.info("Incremental rescan of {} controllers completed: {} changed, {} authorization rules registered", 
+                classNames.size(), changed, endpointRegistry.size());
+    }
+
+    /**
+     * Возвращает true, если правила взяты из таблицы, построенной на этапе AOT
+     * (native image или запуск с -Dspring.aot.enabled=true)
+     */
+    public boolean isUsingPrecomputedRules() {
+        return precomputedRules.getIfAvailable() != null;
+    }
+
+    /**
+     * Возвращает записи индекса для контроллеров в соответствии с режимом сканирования
+     * (весь classpath или настроенные пакеты)
+     */
+    public List<ClasspathIndex.ControllerEntry> findControllerEntries() {
+        return autoScanAll 
+                ? classpathIndex.findAllControllers() 
+                : classpathIndex.findControllersInPackages(scanPackages);
+    }
+
+    /**
+     * Возвращает пакеты, в которых ищутся контроллеры.
+     * Пустой список означает сканирование всего classpath (endpoint-scanner.auto-scan-all=true).
+     */
+    public List<String> getScanPackages() {
+        List<String> packages = new ArrayList<>();
+        if (!autoScanAll) {
+            for (String packageName : scanPackages.split(",")) {
+                if (!packageName.isBlank()) {
+                    packages.add(packageName.trim());
+                }
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * Проверяет, может ли класс быть контроллером, который обрабатывает сканер
+     * (находится в одном из настроенных пакетов или включено сканирование всего classpath)
+     */
+    public boolean isInScanScope(String className) {
+        List<String> packages = getScanPackages();
+        if (packages.isEmpty()) {
+            return true;
+        }
+        for (String packageName : packages) {
+            if (className.startsWith(packageName + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Автоматически находит все контроллеры во всех модулях в classpath.
      * Сканирует весь classpath без необходимости указывать конкретные пакеты.
@@ -92,48 +221,11 @@ public class ControllerScanner implements CommandLineRunner {
      * @return множество найденных контроллеров
      */
     public Set<Class<?>> scanAllControllersInClasspath() {
-        Set<Class<?>> controllers = new HashSet<>();
+        log.info("Scanning all controllers in classpath...");
+        Set<Class<?>> controllers = loadControllers(classpathIndex.findAllControllers());
         
-        try {
-            log.info("Scanning all controllers in classpath...");
-            
-            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-            MetadataReaderFactory metadataReaderFactory = new CachingMetadataReaderFactory(resolver);
-            String pattern = "classpath*:**/*.class";
-            Resource[] resources = resolver.getResources(pattern);
-            
-            int checked = 0;
-            for (Resource resource : resources) {
-                if (resource.isReadable()) {
-                    try {
-                        MetadataReader metadataReader = metadataReaderFactory.getMetadataReader(resource);
-                        String className = metadataReader.getClassMetadata().getClassName();
-                        
-                        // Пропускаем системные классы
-                        if (isSystemClass(className)) {
-                            continue;
-                        }
-                        
-                        checked++;
-                        if (metadataReader.getAnnotationMetadata().hasAnnotation(RestController.class.getName())) {
-                            Class<?> clazz = Class.forName(className);
-                            controllers.add(clazz);
-                            log.info("✓ Found controller: {}", className);
-                        }
-                    } catch (ClassNotFoundException | NoClassDefFoundError e) {
-                        // Игнорируем
-                    }
-                }
-            }
-            
-            log.info("Checked {} classes, found {} controllers", checked, controllers.size());
-            
-            if (controllers.isEmpty()) {
-                log.warn("No controllers found in classpath");
-            }
-            
-        } catch (Exception e) {
-            log.error("Error scanning all controllers in classpath", e);
+        if (controllers.isEmpty()) {
+            log.warn("No controllers found in classpath");
         }
         
         return controllers;
@@ -143,110 +235,100 @@ public class ControllerScanner implements CommandLineRunner {
      * Сканирует контроллеры из указанных пакетов (из конфигурации)
      */
     public Set<Class<?>> scanControllers() {
-        Set<Class<?>> controllers = new HashSet<>();
+        log.info("Scanning controllers in packages: {}", scanPackages);
+        Set<Class<?>> controllers = loadControllers(classpathIndex.findControllersInPackages(scanPackages));
         
-        try {
-            String[] packageArray = scanPackages.split(",");
-            log.info("Scanning controllers in packages: {}", scanPackages);
-            
-            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-            MetadataReaderFactory metadataReaderFactory = new CachingMetadataReaderFactory(resolver);
-            
-            for (String packageName : packageArray) {
-                packageName = packageName.trim();
-                String packagePath = packageName.replace('.', '/');
-                String pattern = "classpath*:" + packagePath + "/**/*.class";
-                
-                log.debug("Scanning pattern: {}", pattern);
-                
-                try {
-                    Resource[] resources = resolver.getResources(pattern);
-                    
-                    for (Resource resource : resources) {
-                        if (resource.isReadable()) {
-                            try {
-                                MetadataReader metadataReader = metadataReaderFactory.getMetadataReader(resource);
-                                String className = metadataReader.getClassMetadata().getClassName();
-                                
-                                if (metadataReader.getAnnotationMetadata().hasAnnotation(RestController.class.getName())) {
-                                    Class<?> clazz = Class.forName(className);
-                                    controllers.add(clazz);
-                                    log.info("✓ Found controller: {}", className);
-                                }
-                            } catch (ClassNotFoundException e) {
-                                // Игнорируем
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    log.warn("Error scanning package {}: {}", packageName, e.getMessage());
-                }
-            }
-            
-            log.info("Total controllers found: {}", controllers.size());
-            
-            if (controllers.isEmpty()) {
-                log.warn("No controllers found in packages: {}", scanPackages);
-            }
-        } catch (Exception e) {
-            log.error("Error scanning controllers", e);
+        log.info("Total controllers found: {}", controllers.size());
+        
+        if (controllers.isEmpty()) {
+            log.warn("No controllers found in packages: {}", scanPackages);
         }
         
         return controllers;
     }
 
     /**
-     * Проверяет, является ли класс системным (не нужно сканировать)
+     * Загружает классы контроллеров из записей индекса
      */
-    private boolean isSystemClass(String className) {
-        return className.startsWith("org.springframework") ||
-               className.startsWith("org.apache") ||
-               className.startsWith("java.") ||
-               className.startsWith("javax.") ||
-               className.startsWith("jakarta.") ||
-               className.contains("$");
+    private Set<Class<?>> loadControllers(List<ClasspathIndex.ControllerEntry> entries) {
+        Set<Class<?>> controllers = new HashSet<>();
+        for (ClasspathIndex.ControllerEntry entry : entries) {
+            Class<?> clazz = entry.loadClass();
+            if (clazz != null) {
+                controllers.add(clazz);
+                log.info("✓ Found controller: {}", entry.getClassName());
+            }
+        }
+        return controllers;
     }
 
     /**
      * Инициализирует правила авторизации на основе аннотаций из контроллеров
      */
-    public void initializeAuthorizationRules(Set<Class<?>> controllerClasses) {
+    public synchronized void initializeAuthorizationRules(Set<Class<?>> controllerClasses) {
         log.info("Initializing authorization rules for {} controllers", controllerClasses.size());
         
+        Map<String, Map<String, String>> scannedRules = new HashMap<>();
         int rulesCount = 0;
         for (Class<?> controllerClass : controllerClasses) {
-            rulesCount += scanController(controllerClass);
+            Map<String, String> rules = ControllerScanningUtils.findEndpointRules(controllerClass);
+            scannedRules.put(controllerClass.getName(), rules);
+            rulesCount += rules.size();
         }
+        applyControllerRules(scannedRules);
         
         log.info("Registered {} authorization rules", rulesCount);
     }
 
     /**
-     * Сканирует контроллер и создает правила авторизации для всех методов
+     * Сравнивает новые правила контроллеров с ранее зарегистрированными
+     * и применяет к реестру только разницу.
+     * 
+     * @return количество контроллеров, правила которых изменились
      */
-    private int scanController(Class<?> controllerClass) {
-        String basePath = ControllerScanningUtils.findBasePath(controllerClass);
-        int rulesCount = 0;
+    private int applyControllerRules(Map<String, Map<String, String>> scannedRules) {
+        Set<String> removedKeys = new HashSet<>();
+        Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>> addedRules = 
+                new HashMap<>();
+        int changedControllers = 0;
         
-        for (Method method : controllerClass.getDeclaredMethods()) {
-            String httpMethod = ControllerScanningUtils.findHttpMethod(method);
-            if (httpMethod == null) continue;
-
-            String methodPath = ControllerScanningUtils.findMethodPath(method);
-            String fullPath = basePath + methodPath;
-
-            BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> authorizationMethod = 
-                ControllerScanningUtils.findAuthorizationMethod(method, this::getAuthorizationMethod);
+        for (Map.Entry<String, Map<String, String>> scanned : scannedRules.entrySet()) {
+            String className = scanned.getKey();
+            Map<String, String> current = scanned.getValue();
+            Map<String, String> previous = rulesByController.getOrDefault(className, Collections.emptyMap());
+            if (previous.equals(current)) {
+                continue;
+            }
+            changedControllers++;
+            
+            for (String key : previous.keySet()) {
+                if (!current.containsKey(key)) {
+                    removedKeys.add(key);
+                }
+            }
+            for (Map.Entry<String, String> rule : current.entrySet()) {
+                if (!rule.getValue().equals(previous.get(rule.getKey()))) {
+                    addedRules.put(rule.getKey(), getAuthorizationMethod(rule.getValue()));
+                    log.debug("Registered authorization rule: {} -> {}", rule.getKey(), rule.getValue());
+                }
+            }
             
-            if (authorizationMethod != null) {
-                String key = httpMethod + ":" + fullPath;
-                endpointRegistry.register(key, authorizationMethod);
-                rulesCount++;
-                log.debug("Registered authorization rule: {} -> {}", key, authorizationMethod);
+            if (current.isEmpty()) {
+                rulesByController.remove(className);
+            } else {
+                rulesByController.put(className, current);
             }
         }
         
-        return rulesCount;
+        // Не снимаем правило, если тот же эндпоинт все еще объявлен другим контроллером
+        removedKeys.removeAll(addedRules.keySet());
+        removedKeys.removeIf(key -> rulesByController.values().stream().anyMatch(rules -> rules.containsKey(key)));
+        
+        if (changedControllers > 0) {
+            endpointRegistry.applyDelta(removedKeys, addedRules);
+            log.debug("Applied rule delta: {} added or changed, {} removed", addedRules.size(), removedKeys.size());
+        }
+        return changedControllers;
     }
 
     /**
@@ -2,13 +2,20 @@ package com.example.gateway.config;
 
 import com.example.commons.security.annotation.*;
 import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.MethodMetadata;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.server.authorization.AuthorizationContext;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 import org.springframework.security.authorization.AuthorizationDecision;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.BiFunction;
 
 /**
@@ -17,6 +24,16 @@ import java.util.function.BiFunction;
  */
 public class ControllerScanningUtils {
 
+    // Аннотации HTTP-маппинга в порядке проверки пути метода
+    private static final List<Class<? extends Annotation>> PATH_MAPPINGS = List.of(
+            GetMapping.class, PostMapping.class, PutMapping.class, DeleteMapping.class, PatchMapping.class,
+            RequestMapping.class);
+
+    // Аннотации безопасности в порядке проверки
+    private static final List<Class<? extends Annotation>> AUTHORIZATION_ANNOTATIONS = List.of(
+            RequireReadDeclaration.class, RequireWriteDeclaration.class, RequireApproveDeclaration.class,
+            RequireReadWare.class, RequireWriteWare.class, RequireManageInventory.class);
+
     /**
      * Находит HTTP метод из аннотаций метода контроллера
      */
@@ -64,6 +81,95 @@ public class ControllerScanningUtils {
             : "";
     }
 
+    /**
+     * Собирает правила контроллера: ключ эндпоинта (METHOD:path) -> тип аннотации безопасности.
+     * Методы без HTTP-маппинга или без аннотации безопасности пропускаются.
+     */
+    public static Map<String, String> findEndpointRules(Class<?> controllerClass) {
+        String basePath = findBasePath(controllerClass);
+        Map<String, String> rules = new LinkedHashMap<>();
+        
+        for (Method method : controllerClass.getDeclaredMethods()) {
+            String httpMethod = findHttpMethod(method);
+            if (httpMethod == null) continue;
+
+            String annotationType = findAuthorizationAnnotationType(method);
+            if (annotationType != null) {
+                rules.put(httpMethod + ":" + basePath + findMethodPath(method), annotationType);
+            }
+        }
+        
+        return rules;
+    }
+
+    /**
+     * Собирает правила контроллера по метаданным class-файла, без загрузки класса.
+     * Дает тот же результат, что и findEndpointRules(Class), для аннотаций, объявленных
+     * в самом контроллере (маппинги, унаследованные от суперкласса, не учитываются).
+     */
+    public static Map<String, String> findEndpointRules(AnnotationMetadata controllerMetadata) {
+        String basePath = findFirstValue(controllerMetadata, RequestMapping.class);
+        Map<String, String> rules = new LinkedHashMap<>();
+
+        for (MethodMetadata method : controllerMetadata.getDeclaredMethods()) {
+            String httpMethod = findHttpMethod(method);
+            if (httpMethod == null) continue;
+
+            String annotationType = findAuthorizationAnnotationType(method);
+            if (annotationType != null) {
+                rules.put(httpMethod + ":" + (basePath != null ? basePath : "") + findMethodPath(method), annotationType);
+            }
+        }
+
+        return rules;
+    }
+
+    /**
+     * Находит HTTP метод по метаданным метода контроллера
+     */
+    public static String findHttpMethod(MethodMetadata method) {
+        if (method.isAnnotated(GetMapping.class.getName())) return "GET";
+        if (method.isAnnotated(PostMapping.class.getName())) return "POST";
+        if (method.isAnnotated(PutMapping.class.getName())) return "PUT";
+        if (method.isAnnotated(DeleteMapping.class.getName())) return "DELETE";
+        if (method.isAnnotated(PatchMapping.class.getName())) return "PATCH";
+        return null;
+    }
+
+    /**
+     * Находит путь метода по метаданным
+     */
+    public static String findMethodPath(MethodMetadata method) {
+        for (Class<? extends Annotation> mapping : PATH_MAPPINGS) {
+            String path = findFirstValue(method, mapping);
+            if (path != null) return path;
+        }
+        return "";
+    }
+
+    /**
+     * Находит тип аннотации безопасности по метаданным метода (простое имя аннотации)
+     */
+    public static String findAuthorizationAnnotationType(MethodMetadata method) {
+        for (Class<? extends Annotation> annotation : AUTHORIZATION_ANNOTATIONS) {
+            if (method.isAnnotated(annotation.getName())) {
+                return annotation.getSimpleName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Первое значение атрибута value аннотации или null, если аннотации нет или value пустой
+     */
+    private static String findFirstValue(AnnotatedTypeMetadata metadata, Class<? extends Annotation> annotation) {
+        Map<String, Object> attributes = metadata.getAnnotationAttributes(annotation.getName());
+        if (attributes == null || !(attributes.get("value") instanceof String[] values) || values.length == 0) {
+            return null;
+        }
+        return values[0];
+    }
+
     /**
      * Интерфейс для получения метода авторизации
      */
@@ -78,24 +184,31 @@ public class ControllerScanningUtils {
      */
     public static BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> 
             findAuthorizationMethod(Method method, AuthorizationMethodProvider provider) {
-        
+        String annotationType = findAuthorizationAnnotationType(method);
+        return annotationType != null ? provider.getMethod(annotationType) : null;
+    }
+
+    /**
+     * Находит тип аннотации безопасности метода (простое имя аннотации)
+     */
+    public static String findAuthorizationAnnotationType(Method method) {
         if (AnnotationUtils.findAnnotation(method, RequireReadDeclaration.class) != null) {
-            return provider.getMethod("RequireReadDeclaration");
+            return "RequireReadDeclaration";
         }
         if (AnnotationUtils.findAnnotation(method, RequireWriteDeclaration.class) != null) {
-            return provider.getMethod("RequireWriteDeclaration");
+            return "RequireWriteDeclaration";
         }
         if (AnnotationUtils.findAnnotation(method, RequireApproveDeclaration.class) != null) {
-            return provider.getMethod("RequireApproveDeclaration");
+            return "RequireApproveDeclaration";
         }
         if (AnnotationUtils.findAnnotation(method, RequireReadWare.class) != null) {
-            return provider.getMethod("RequireReadWare");
+            return "RequireReadWare";
         }
         if (AnnotationUtils.findAnnotation(method, RequireWriteWare.class) != null) {
-            return provider.getMethod("RequireWriteWare");
+            return "RequireWriteWare";
         }
         if (AnnotationUtils.findAnnotation(method, RequireManageInventory.class) != null) {
-            return provider.getMethod("RequireManageInventory");
+            return "RequireManageInventory";
         }
         return null;
     }
@@ -2,6 +2,7 @@ package com.example.gateway.config;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.server.authorization.AuthorizationContext;
 import org.springframework.stereotype.Component;
@@ -10,63 +11,296 @@ import reactor.core.publisher.Mono;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * Реестр правил авторизации для эндпоинтов.
  * Хранит маппинг путь+метод -> метод CustomAuthorizationManager.
+ *
+ * Правила разделены на слои по источнику: локальное сканирование контроллеров (LOCAL_LAYER)
+ * и по слою на каждый удаленный модуль. Каждый слой - неизменяемая таблица, которая заменяется
+ * целиком одной записью ссылки, поэтому запросы видят либо старые, либо новые правила слоя,
+ * а изменение одного слоя не затрагивает остальные. При поиске локальный слой проверяется первым,
+ * затем слои модулей в порядке их имен, поэтому при пересечении правил результат не зависит
+ * от порядка регистрации модулей.
+ *
+ * У слоя удаленного модуля может быть аренда (lease): модуль продлевает ее heartbeat-запросами,
+ * а слои с истекшей арендой снимаются целиком (removeExpiredLayers).
+ *
+ * Все изменения слоя (правила, аренда, снятие) выполняются внутри layers.compute для его имени,
+ * поэтому изменение не может попасть в слой, который в это же время снимается.
  */
 @Component
 public class EndpointAuthorizationRegistry {
 
     private static final Logger log = LoggerFactory.getLogger(EndpointAuthorizationRegistry.class);
 
-    private final Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<org.springframework.security.authorization.AuthorizationDecision>>> rules = 
-            new ConcurrentHashMap<>();
+    /**
+     * Слой правил локально отсканированных контроллеров
+     */
+    public static final String LOCAL_LAYER = "local";
+
+    // Сколько первых сегментов пути используется для поиска модуля по пути запроса
+    private static final int PREFIX_DEPTH = 2;
+
+    private final RuleLayer localLayer = new RuleLayer(LOCAL_LAYER);
+    private final Map<String, RuleLayer> layers = new ConcurrentHashMap<>();
+    // Порядок поиска: локальный слой, затем слои модулей по имени; пересобирается при добавлении и снятии слоя
+    private volatile List<RuleLayer> searchOrder = List.of(localLayer);
+
+    public EndpointAuthorizationRegistry() {
+        layers.put(LOCAL_LAYER, localLayer);
+    }
+
+    /**
+     * Регистрирует правило авторизации для эндпоинта в локальном слое
+     */
+    public void register(String endpointKey,
+                        BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> authorizationMethod) {
+        register(LOCAL_LAYER, endpointKey, authorizationMethod);
+    }
+
+    /**
+     * Регистрирует правило авторизации для эндпоинта в указанном слое
+     */
+    public void register(String layerName, String endpointKey,
+                         BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> authorizationMethod) {
+        applyDelta(layerName, Collections.emptySet(), Map.of(endpointKey, authorizationMethod));
+    }
+
+    /**
+     * Удаляет правило авторизации для эндпоинта из локального слоя
+     */
+    public void unregister(String endpointKey) {
+        applyDelta(LOCAL_LAYER, Set.of(endpointKey), Collections.emptyMap());
+    }
+
+    /**
+     * Применяет разницу правил к локальному слою: сначала добавляет новые и измененные, затем снимает удаленные.
+     * Правила удаленных модулей не затрагиваются.
+     */
+    public void applyDelta(Collection<String> removedKeys,
+                           Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>> addedRules) {
+        applyDelta(LOCAL_LAYER, removedKeys, addedRules);
+    }
+
+    /**
+     * Применяет разницу правил к слою. Слой создается, если его еще нет; аренда слоя сохраняется.
+     * Новая таблица слоя строится рядом со старой и публикуется одной записью.
+     */
+    public void applyDelta(String layerName, Collection<String> removedKeys,
+                           Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>> addedRules) {
+        applyDelta(layerName, removedKeys, addedRules, 0);
+    }
+
+    /**
+     * Применяет разницу правил к слою и вместе с ней продлевает аренду слоя
+     *
+     * @param leaseMillis срок аренды; 0 - сохранить текущую аренду
+     */
+    public void applyDelta(String layerName, Collection<String> removedKeys,
+                           Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>> addedRules,
+                           long leaseMillis) {
+        updateLayer(layerName, leaseMillis, layer -> {
+            Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>> updated =
+                    new HashMap<>(layer.rules);
+            updated.putAll(addedRules);
+            for (String key : removedKeys) {
+                updated.remove(key);
+            }
+            return updated;
+        });
+    }
+
+    /**
+     * Заменяет все правила слоя. Слой создается, если его еще нет; аренда слоя сохраняется.
+     */
+    public void replaceLayer(String layerName,
+                             Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>> rules) {
+        replaceLayer(layerName, rules, 0);
+    }
+
+    /**
+     * Заменяет все правила слоя и вместе с ними продлевает аренду слоя
+     *
+     * @param leaseMillis срок аренды; 0 - сохранить текущую аренду
+     */
+    public void replaceLayer(String layerName,
+                             Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>> rules,
+                             long leaseMillis) {
+        updateLayer(layerName, leaseMillis, layer -> new HashMap<>(rules));
+    }
+
+    /**
+     * Снимает слой вместе со всеми его правилами
+     *
+     * @return количество снятых правил или -1, если слоя не было
+     */
+    public int removeLayer(String layerName) {
+        if (LOCAL_LAYER.equals(layerName)) {
+            int size = localLayer.rules.size();
+            clear();
+            return size;
+        }
+        RuleLayer layer = layers.remove(layerName);
+        if (layer == null) {
+            return -1;
+        }
+        refreshSearchOrder();
+        return layer.rules.size();
+    }
 
     /**
-     * Регистрирует правило авторизации для эндпоинта
+     * Продлевает аренду слоя удаленного модуля
+     *
+     * @return false, если такого слоя нет (например, gateway перезапустился)
      */
-    public void register(String endpointKey, 
-                        BiFunction<Mono<Authentication>, AuthorizationContext, Mono<org.springframework.security.authorization.AuthorizationDecision>> authorizationMethod) {
-        rules.put(endpointKey, authorizationMethod);
+    public boolean renewLease(String layerName, long leaseMillis) {
+        if (LOCAL_LAYER.equals(layerName)) {
+            return false;
+        }
+        return layers.computeIfPresent(layerName, (name, layer) -> {
+            layer.leaseExpiresAt = System.currentTimeMillis() + leaseMillis;
+            return layer;
+        }) != null;
+    }
+
+    /**
+     * Продлевает аренду слоя, только если она у слоя уже есть. Слой без аренды так и остается без нее.
+     *
+     * @return true, если аренда продлена
+     */
+    public boolean renewExistingLease(String layerName, long leaseMillis) {
+        if (LOCAL_LAYER.equals(layerName)) {
+            return false;
+        }
+        boolean[] renewed = new boolean[1];
+        layers.computeIfPresent(layerName, (name, layer) -> {
+            if (layer.leaseExpiresAt != Long.MAX_VALUE) {
+                layer.leaseExpiresAt = System.currentTimeMillis() + leaseMillis;
+                renewed[0] = true;
+            }
+            return layer;
+        });
+        return renewed[0];
     }
 
     /**
-     * Очищает все зарегистрированные правила
+     * Снимает слои, аренда которых истекла. Слои без аренды не истекают.
+     *
+     * @return имена снятых слоев
+     */
+    public List<String> removeExpiredLayers() {
+        List<String> removed = new ArrayList<>();
+        for (String layerName : layers.keySet()) {
+            if (LOCAL_LAYER.equals(layerName)) {
+                continue;
+            }
+            // Аренда проверяется под той же блокировкой, под которой слой изменяется и продлевается
+            layers.computeIfPresent(layerName, (name, layer) -> {
+                if (layer.leaseExpiresAt > System.currentTimeMillis()) {
+                    return layer;
+                }
+                removed.add(name);
+                log.debug("Lease of module {} expired, removed its {} authorization rules", name, layer.rules.size());
+                return null;
+            });
+        }
+        if (!removed.isEmpty()) {
+            refreshSearchOrder();
+            // Одна строка на проверку, а не на каждый модуль
+            log.info("Leases of {} modules expired, removed their authorization rules: {}", removed.size(), removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Очищает правила локального слоя. Правила удаленных модулей сохраняются.
      */
     public void clear() {
-        rules.clear();
+        updateLayer(LOCAL_LAYER, 0, layer -> new HashMap<>());
     }
 
     /**
-     * Возвращает количество зарегистрированных правил
+     * Возвращает количество зарегистрированных правил во всех слоях
      */
     public int size() {
-        return rules.size();
+        int size = 0;
+        for (RuleLayer layer : layers.values()) {
+            size += layer.rules.size();
+        }
+        return size;
+    }
+
+    /**
+     * Возвращает количество правил в каждом слое
+     */
+    public Map<String, Integer> getLayerSizes() {
+        Map<String, Integer> sizes = new TreeMap<>();
+        for (Map.Entry<String, RuleLayer> entry : layers.entrySet()) {
+            sizes.put(entry.getKey(), entry.getValue().rules.size());
+        }
+        return sizes;
+    }
+
+    /**
+     * Находит слои удаленных модулей, которым, судя по их правилам, принадлежит путь запроса.
+     * Сначала сравнивается префикс из первых двух сегментов пути (/api/declarations): возвращаются все
+     * слои с этим префиксом. Более короткий префикс (/api) обычно общий для всех модулей, поэтому он
+     * учитывается, только если принадлежит ровно одному слою.
+     *
+     * @return совпавший префикс и его слои или null, если путь не принадлежит ни одному модулю
+     */
+    public PrefixOwners findPrefixOwners(String path) {
+        List<String> prefixes = staticPrefixes(path);
+        for (int i = prefixes.size() - 1; i >= 0; i--) {
+            List<String> result = new ArrayList<>();
+            for (RuleLayer layer : searchOrder) {
+                if (layer != localLayer && layer.prefixes.contains(prefixes.get(i))) {
+                    result.add(layer.name);
+                }
+            }
+            if (result.size() == 1 || (!result.isEmpty() && i == PREFIX_DEPTH - 1)) {
+                return new PrefixOwners(prefixes.get(i), result);
+            }
+        }
+        return null;
     }
 
     /**
      * Возвращает все зарегистрированные эндпоинты
      */
     public Set<String> getAllEndpoints() {
-        return new HashSet<>(rules.keySet());
+        Set<String> endpoints = new HashSet<>();
+        for (RuleLayer layer : layers.values()) {
+            endpoints.addAll(layer.rules.keySet());
+        }
+        return endpoints;
     }
 
     /**
      * Выводит в консоль все зарегистрированные эндпоинты
      */
     public void printAllEndpoints() {
-        if (rules.isEmpty()) {
+        int size = size();
+        if (size == 0) {
             log.info("=== EndpointAuthorizationRegistry: No endpoints registered ===");
             return;
         }
 
-        log.info("=== EndpointAuthorizationRegistry: {} registered endpoints ===", rules.size());
-        List<String> sortedEndpoints = new ArrayList<>(rules.keySet());
-        Collections.sort(sortedEndpoints);
-        
-        for (String endpoint : sortedEndpoints) {
-            log.info("  - {}", endpoint);
+        log.info("=== EndpointAuthorizationRegistry: {} registered endpoints ===", size);
+        for (Map.Entry<String, RuleLayer> entry : new TreeMap<>(layers).entrySet()) {
+            Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>> rules =
+                    entry.getValue().rules;
+            if (rules.isEmpty()) {
+                continue;
+            }
+            log.info("  [{}] {} endpoints", entry.getKey(), rules.size());
+            List<String> sortedEndpoints = new ArrayList<>(rules.keySet());
+            Collections.sort(sortedEndpoints);
+            for (String endpoint : sortedEndpoints) {
+                log.info("  - {}", endpoint);
+            }
         }
         log.info("=== End of registered endpoints ===");
     }
@@ -74,32 +308,97 @@ public class EndpointAuthorizationRegistry {
     /**
      * Находит метод авторизации для эндпоинта
      */
-    public BiFunction<Mono<Authentication>, AuthorizationContext, Mono<org.springframework.security.authorization.AuthorizationDecision>> findAuthorizationMethod(String method, String path) {
-        // Ищем точное совпадение
+    public BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> findAuthorizationMethod(String method, String path) {
+        // Ищем точное совпадение: сначала локальный слой, затем слои модулей по имени
         String key = method + ":" + path;
-        BiFunction<Mono<Authentication>, AuthorizationContext, Mono<org.springframework.security.authorization.AuthorizationDecision>> methodRef = rules.get(key);
-        
-        // Если не найдено, ищем по паттерну (для path variables)
-        if (methodRef == null) {
-            methodRef = findByPattern(method, path);
+        List<RuleLayer> order = searchOrder;
+        BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> methodRef = null;
+        for (RuleLayer layer : order) {
+            if ((methodRef = layer.rules.get(key)) != null) {
+                return methodRef;
+            }
+        }
+
+        // Если не найдено, ищем по паттерну (для path variables) в том же порядке
+        for (RuleLayer layer : order) {
+            if ((methodRef = findByPattern(layer.rules, method, path)) != null) {
+                return methodRef;
+            }
         }
-        
-        return methodRef;
+
+        return null;
+    }
+
+    /**
+     * Публикует новую таблицу слоя (создавая слой, если его нет) и продлевает аренду одним шагом
+     * внутри layers.compute
+     */
+    private void updateLayer(String layerName, long leaseMillis,
+                             Function<RuleLayer, Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>>> update) {
+        boolean[] created = new boolean[1];
+        layers.compute(layerName, (name, current) -> {
+            created[0] = current == null;
+            RuleLayer layer = current != null ? current : new RuleLayer(name);
+            layer.publish(update.apply(layer));
+            if (leaseMillis > 0 && layer != localLayer) {
+                layer.leaseExpiresAt = System.currentTimeMillis() + leaseMillis;
+            }
+            return layer;
+        });
+        if (created[0]) {
+            refreshSearchOrder();
+        }
+    }
+
+    /**
+     * Пересобирает порядок поиска по текущему набору слоев. Вызывается после добавления или снятия слоя;
+     * синхронизация гарантирует, что последним опубликован порядок по самому свежему набору.
+     */
+    private synchronized void refreshSearchOrder() {
+        List<RuleLayer> order = new ArrayList<>();
+        order.add(localLayer);
+        for (Map.Entry<String, RuleLayer> entry : new TreeMap<>(layers).entrySet()) {
+            if (entry.getValue() != localLayer) {
+                order.add(entry.getValue());
+            }
+        }
+        searchOrder = List.copyOf(order);
+    }
+
+    /**
+     * Префиксы пути из первых сегментов без переменных: /api/declarations/{id} -> [/api, /api/declarations]
+     */
+    private static List<String> staticPrefixes(String path) {
+        List<String> prefixes = new ArrayList<>(PREFIX_DEPTH);
+        StringBuilder prefix = new StringBuilder();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (prefixes.size() == PREFIX_DEPTH || segment.contains("{") || segment.contains("*")) {
+                break;
+            }
+            prefix.append('/').append(segment);
+            prefixes.add(prefix.toString());
+        }
+        return prefixes;
     }
 
     /**
      * Ищет метод авторизации по паттерну пути (для path variables)
      */
-    private BiFunction<Mono<Authentication>, AuthorizationContext, Mono<org.springframework.security.authorization.AuthorizationDecision>> findByPattern(String method, String path) {
-        for (Map.Entry<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<org.springframework.security.authorization.AuthorizationDecision>>> entry : rules.entrySet()) {
+    private BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> findByPattern(
+            Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>> rules,
+            String method, String path) {
+        for (Map.Entry<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>> entry : rules.entrySet()) {
             String[] parts = entry.getKey().split(":", 2);
             if (parts.length != 2) continue;
-            
+
             String entryMethod = parts[0];
             String entryPath = parts[1];
-            
+
             if (!entryMethod.equals(method)) continue;
-            
+
             // Простая проверка паттерна (заменяем {variable} на [^/]+)
             String pattern = entryPath.replaceAll("\\{[^}]+\\}", "[^/]+");
             if (path.matches("^" + pattern + "$")) {
@@ -108,4 +407,47 @@ public class EndpointAuthorizationRegistry {
         }
         return null;
     }
+
+    /**
+     * Префикс пути и слои модулей, которым он принадлежит
+     */
+    public static class PrefixOwners {
+        public final String prefix;
+        public final List<String> layers;
+
+        public PrefixOwners(String prefix, List<String> layers) {
+            this.prefix = prefix;
+            this.layers = layers;
+        }
+    }
+
+    /**
+     * Слой правил одного источника. Таблица правил не изменяется после публикации -
+     * изменения строят новую таблицу и заменяют ссылку.
+     */
+    private static class RuleLayer {
+        private final String name;
+        private volatile Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>> rules =
+                Collections.emptyMap();
+        // Префиксы путей правил слоя (см. staticPrefixes) - для поиска модуля по пути запроса
+        private volatile Set<String> prefixes = Collections.emptySet();
+        // Момент истечения аренды; Long.MAX_VALUE - слой без аренды
+        private volatile long leaseExpiresAt = Long.MAX_VALUE;
+
+        private RuleLayer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Публикует новую таблицу правил; вызывается внутри layers.compute для имени слоя
+         */
+        private void publish(Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>> updated) {
+            Set<String> pathPrefixes = new HashSet<>();
+            for (String key : updated.keySet()) {
+                pathPrefixes.addAll(staticPrefixes(key.substring(key.indexOf(':') + 1)));
+            }
+            prefixes = pathPrefixes;
+            rules = Collections.unmodifiableMap(updated);
+        }
+    }
 }
@@ -1,12 +1,30 @@
 package com.example.gateway.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 /**
  * REST контроллер для регистрации эндпоинтов от удаленных модулей.
@@ -19,9 +37,24 @@ public class EndpointRegistrationController {
     private static final Logger log = LoggerFactory.getLogger(EndpointRegistrationController.class);
 
     private final EndpointRegistrationService registrationService;
+    private final ObjectMapper objectMapper;
 
-    public EndpointRegistrationController(EndpointRegistrationService registrationService) {
+    // Максимальный размер тела запроса регистрации списка (в сжатом виде)
+    @Value("${gateway.registration.max-manifest-bytes:16777216}")
+    private int maxManifestBytes;
+
+    // Максимальный размер списка после распаковки; ограничивает сжатые тела с большим коэффициентом сжатия
+    @Value("${gateway.registration.max-manifest-decompressed-bytes:67108864}")
+    private long maxManifestDecompressedBytes;
+
+    // Сколько записей потоковой регистрации проверяется за раз
+    @Value("${gateway.registration.chunk-size:500}")
+    private int chunkSize;
+
+    public EndpointRegistrationController(EndpointRegistrationService registrationService,
+                                          ObjectMapper objectMapper) {
         this.registrationService = registrationService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -88,36 +121,27 @@ public class EndpointRegistrationController {
      *     }
      *   ]
      * }
+     * 
+     * Тело целиком читается в память и ограничено spring.codec.max-in-memory-size.
+     * Для больших модулей используйте потоковый вариант с параметром moduleName.
      */
-    @PostMapping("/register-batch")
-    public ResponseEntity<Map<String, Object>> registerEndpoints(@RequestBody Map<String, Object> request) {
+    @PostMapping(value = "/register-batch", params = "!moduleName")
+    public ResponseEntity<Map<String, Object>> registerEndpoints(@RequestBody BatchRegistration request) {
         try {
-            String moduleName = (String) request.get("moduleName");
-            @SuppressWarnings("unchecked")
-            List<Map<String, String>> endpointsData = (List<Map<String, String>>) request.get("endpoints");
-
-            if (moduleName == null || endpointsData == null) {
+            if (request.moduleName == null || request.endpoints == null) {
                 return ResponseEntity.badRequest().body(Map.of(
                     "success", false,
                     "error", "Missing required fields: moduleName, endpoints"
                 ));
             }
 
-            List<EndpointRegistrationService.EndpointInfo> endpoints = endpointsData.stream()
-                .map(data -> new EndpointRegistrationService.EndpointInfo(
-                    data.get("httpMethod"),
-                    data.get("path"),
-                    data.get("annotationType")
-                ))
-                .toList();
-
-            int registered = registrationService.registerEndpoints(moduleName, endpoints);
+            int registered = registrationService.registerEndpoints(request.moduleName, request.endpoints);
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
-                "moduleName", moduleName,
+                "moduleName", request.moduleName,
                 "registered", registered,
-                "total", endpoints.size()
+                "total", request.endpoints.size()
             ));
         } catch (Exception e) {
             log.error("Error registering endpoints", e);
@@ -127,4 +151,293 @@ public class EndpointRegistrationController {
             ));
         }
     }
+
+    /**
+     * Потоковая регистрация нескольких эндпоинтов
+     * POST /api/gateway/endpoints/register-batch?moduleName=moduleA
+     * 
+     * Тело - NDJSON (Content-Type: application/x-ndjson), по записи на строку:
+     * {"httpMethod":"GET","path":"/api/declarations","annotationType":"RequireReadDeclaration"}
+     * {"httpMethod":"POST","path":"/api/declarations","annotationType":"RequireWriteDeclaration"}
+     * 
+     * или JSON массив таких записей (Content-Type: application/json).
+     * 
+     * Записи читаются из тела по одной, с обратным давлением, и проверяются частями по
+     * gateway.registration.chunk-size. В памяти накапливаются только готовые правила, поэтому размер
+     * тела не ограничен spring.codec.max-in-memory-size (ограничение действует на одну запись).
+     * Правила добавляются в слой модуля одной заменой после чтения всего тела; если тело не удалось
+     * разобрать, ничего не регистрируется.
+     * 
+     * Ответ:
+     * {
+     *   "success": true,
+     *   "moduleName": "moduleA",
+     *   "received": 20001,
+     *   "registered": 20000,
+     *   "invalid": 1,
+     *   "errors": { "missingFields": 0, "unknownAnnotationType": 1 }
+     * }
+     */
+    @PostMapping(value = "/register-batch", params = "moduleName",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Mono<ResponseEntity<Map<String, Object>>> registerEndpointStream(
+            @RequestParam String moduleName,
+            @RequestBody Flux<EndpointRegistrationService.EndpointInfo> endpoints) {
+        EndpointRegistrationService.PendingManifest pending = registrationService.beginManifest(moduleName);
+        return endpoints
+            .buffer(chunkSize)
+            .doOnNext(pending::addAll)
+            // Замена слоя копирует его таблицу - вне потока event loop
+            .then(Mono.fromCallable(pending::merge).subscribeOn(Schedulers.boundedElastic()))
+            .map(registered -> ResponseEntity.ok(Map.<String, Object>of(
+                "success", true,
+                "moduleName", moduleName,
+                "received", pending.getReceived(),
+                "registered", registered,
+                "invalid", pending.getInvalid(),
+                "errors", Map.of(
+                    "missingFields", pending.getMissingFields(),
+                    "unknownAnnotationType", pending.getUnknownAnnotationTypes()
+                )
+            )))
+            .onErrorResume(e -> e instanceof DecodingException || e instanceof ServerWebInputException, e -> {
+                log.warn("Invalid endpoint stream from module {}, nothing registered: {}", moduleName, e.getMessage());
+                return Mono.just(ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "moduleName", moduleName,
+                    "error", String.valueOf(e.getMessage())
+                )));
+            })
+            .onErrorResume(e -> {
+                log.error("Error registering endpoint stream from module {}", moduleName, e);
+                return Mono.just(ResponseEntity.status(500).body(Map.of(
+                    "success", false,
+                    "error", String.valueOf(e.getMessage())
+                )));
+            });
+    }
+
+    /**
+     * Регистрация списка эндпоинтов модуля по инициативе модуля (ModuleRegistrar из commons)
+     * POST /api/gateway/endpoints/manifest
+     * 
+     * Тело может быть сжато (Content-Encoding: gzip):
+     * {
+     *   "moduleName": "moduleA",
+     *   "instanceId": "12345@host",
+     *   "version": "68d36f7f8ff6bb22",
+     *   "baseVersion": "dd524a344f28cbaa",
+     *   "delta": true,
+     *   "endpoints": [ { "httpMethod": "GET", "path": "/api/declarations", "annotationType": "RequireReadDeclaration" } ],
+     *   "removed": [ { "httpMethod": "DELETE", "path": "/api/declarations/{id}" } ]
+     * }
+     * 
+     * Если delta = true, а baseVersion не совпадает с примененной версией модуля, возвращается 409 -
+     * модуль должен отправить полный список. Тело, которое не удалось разобрать, дает 400; тело больше
+     * gateway.registration.max-manifest-bytes (или больше max-manifest-decompressed-bytes после
+     * распаковки) - 413.
+     * 
+     * После регистрации слой правил модуля получает аренду, которую модуль продлевает через /heartbeat.
+     */
+    @PostMapping("/manifest")
+    public Mono<ResponseEntity<Map<String, Object>>> registerManifest(ServerHttpRequest request) {
+        boolean gzip = "gzip".equalsIgnoreCase(request.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        return DataBufferUtils.join(request.getBody(), maxManifestBytes)
+            // Распаковка и регистрация - вне потока event loop
+            .publishOn(Schedulers.boundedElastic())
+            .map(body -> {
+                ManifestRegistration manifest = readManifest(body, gzip);
+                if (manifest.moduleName == null || manifest.version == null) {
+                    return ResponseEntity.badRequest().body(Map.<String, Object>of(
+                        "success", false,
+                        "error", "Missing required fields: moduleName, version"
+                    ));
+                }
+                int registered = registrationService.applyManifest(manifest.moduleName, manifest.version,
+                        manifest.baseVersion, manifest.delta, manifest.endpoints, manifest.removed, true);
+                if (registered < 0) {
+                    return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.<String, Object>of(
+                        "success", false,
+                        "moduleName", manifest.moduleName,
+                        "appliedVersion", String.valueOf(registrationService.getModuleVersion(manifest.moduleName))
+                    ));
+                }
+                log.info("Module {} instance {} registered version {} ({}: {} endpoints, {} removed)",
+                        manifest.moduleName, manifest.instanceId, manifest.version,
+                        manifest.delta ? "changes" : "full list", registered,
+                        manifest.delta && manifest.removed != null ? manifest.removed.size() : 0);
+                return ResponseEntity.ok(Map.<String, Object>of(
+                    "success", true,
+                    "moduleName", manifest.moduleName,
+                    "version", manifest.version,
+                    "registered", registered
+                ));
+            })
+            .onErrorResume(DataBufferLimitException.class, e -> {
+                log.warn("Rejected endpoint manifest: {}", e.getMessage());
+                return Mono.just(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of(
+                    "success", false,
+                    "error", String.valueOf(e.getMessage())
+                )));
+            })
+            .onErrorResume(ServerWebInputException.class, e -> {
+                log.warn("Rejected endpoint manifest: {}", e.getReason());
+                return Mono.just(ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "error", String.valueOf(e.getReason())
+                )));
+            })
+            .onErrorResume(e -> {
+                log.error("Error registering endpoint manifest", e);
+                return Mono.just(ResponseEntity.status(500).body(Map.of(
+                    "success", false,
+                    "error", String.valueOf(e.getMessage())
+                )));
+            });
+    }
+
+    /**
+     * Продление аренды слоя правил модуля
+     * POST /api/gateway/endpoints/heartbeat
+     * 
+     * Body:
+     * {
+     *   "moduleName": "moduleA",
+     *   "instanceId": "12345@host",
+     *   "version": "68d36f7f8ff6bb22"
+     * }
+     * 
+     * Если у gateway нет правил модуля (аренда истекла или gateway перезапустился) или применена
+     * другая версия списка, возвращается 404 - модуль должен отправить полный список.
+     */
+    @PostMapping("/heartbeat")
+    public ResponseEntity<Map<String, Object>> heartbeat(@RequestBody Heartbeat heartbeat) {
+        if (heartbeat.moduleName == null) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "error", "Missing required field: moduleName"
+            ));
+        }
+        if (!registrationService.renewLease(heartbeat.moduleName, heartbeat.version)) {
+            log.info("Heartbeat from module {} instance {} for unknown version {}, requesting full endpoint list",
+                    heartbeat.moduleName, heartbeat.instanceId, heartbeat.version);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                "success", false,
+                "moduleName", heartbeat.moduleName,
+                "appliedVersion", String.valueOf(registrationService.getModuleVersion(heartbeat.moduleName))
+            ));
+        }
+        log.debug("Heartbeat from module {} instance {}", heartbeat.moduleName, heartbeat.instanceId);
+        return ResponseEntity.ok(Map.of(
+            "success", true,
+            "moduleName", heartbeat.moduleName
+        ));
+    }
+
+    /**
+     * Разбирает тело списка; размер после распаковки ограничен max-manifest-decompressed-bytes
+     */
+    private ManifestRegistration readManifest(DataBuffer body, boolean gzip) {
+        LimitedInputStream input = null;
+        try (InputStream raw = body.asInputStream(true)) {
+            input = new LimitedInputStream(gzip ? new GZIPInputStream(raw) : raw, maxManifestDecompressedBytes);
+            return objectMapper.readValue(input, ManifestRegistration.class);
+        } catch (IOException e) {
+            if (input != null && input.isLimitExceeded()) {
+                throw new DataBufferLimitException("Endpoint manifest exceeds " + maxManifestDecompressedBytes
+                        + " bytes after decompression");
+            }
+            throw new ServerWebInputException("Malformed endpoint manifest: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Поток, который бросает IOException после чтения больше limit байт
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+        private boolean limitExceeded;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        boolean isLimitExceeded() {
+            return limitExceeded;
+        }
+
+        private void count(long n) throws IOException {
+            count += n;
+            if (count > limit) {
+                limitExceeded = true;
+                throw new IOException("Endpoint manifest exceeds " + limit + " bytes");
+            }
+        }
+    }
+
+    /**
+     * Список эндпоинтов модуля: полный или разница относительно baseVersion
+     */
+    public static class ManifestRegistration {
+        public String moduleName;
+        public String instanceId;
+        public String version;
+        public String baseVersion;
+        public boolean delta;
+        public List<EndpointRegistrationService.EndpointInfo> endpoints;
+        public List<EndpointRegistrationService.EndpointInfo> removed;
+
+        public ManifestRegistration() {
+        }
+    }
+
+    /**
+     * Тело пакетной регистрации эндпоинтов
+     */
+    public static class BatchRegistration {
+        public String moduleName;
+        public List<EndpointRegistrationService.EndpointInfo> endpoints;
+
+        public BatchRegistration() {
+        }
+    }
+
+    /**
+     * Heartbeat модуля: версия списка, которую модуль считает примененной
+     */
+    public static class Heartbeat {
+        public String moduleName;
+        public String instanceId;
+        public String version;
+
+        public Heartbeat() {
+        }
+    }
 }
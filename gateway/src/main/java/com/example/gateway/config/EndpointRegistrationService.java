@@ -3,6 +3,7 @@ package com.example.gateway.config;
 import com.example.gateway.security.CustomAuthorizationManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 import org.springframework.security.core.Authentication;
@@ -10,11 +11,26 @@ import org.springframework.security.web.server.authorization.AuthorizationContex
 import org.springframework.security.authorization.AuthorizationDecision;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 
 /**
  * Сервис для регистрации эндпоинтов от удаленных модулей (микросервисов).
  * Используется когда каждый модуль находится в отдельном контейнере.
+ *
+ * Хранит версию списка эндпоинтов каждого модуля, которая сейчас применена, независимо от того,
+ * получен список опросом (RemoteModuleScanner) или модуль отправил его сам (ModuleRegistrar из commons).
+ *
+ * Правила каждого модуля хранятся в отдельном слое EndpointAuthorizationRegistry (имя слоя - имя модуля):
+ * полный список заменяет слой целиком, разница меняет только его. Модули, которые регистрируются сами,
+ * получают аренду слоя на gateway.registration.lease-ms и продлевают ее heartbeat-запросами.
+ * Успешный опрос модуля тоже продлевает аренду, если она у слоя есть: модуль, который когда-то
+ * зарегистрировался сам, а теперь только опрашивается, не теряет слой.
+ * Фоновый поток снимает слои модулей, аренда которых истекла, и забывает их версии -
+ * после возврата модуль отправит полный список.
  */
 @Service
 public class EndpointRegistrationService {
@@ -24,10 +40,37 @@ public class EndpointRegistrationService {
     private final EndpointAuthorizationRegistry endpointRegistry;
     private final CustomAuthorizationManager authorizationManager;
 
+    // Модуль -> версия списка эндпоинтов, которая сейчас применена
+    private final Map<String, String> moduleVersions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService leaseSweeper;
+
+    // Срок аренды слоя модуля после регистрации или heartbeat
+    @Value("${gateway.registration.lease-ms:90000}")
+    private long leaseMs;
+
+    @Value("${gateway.registration.sweep-interval-ms:15000}")
+    private long sweepIntervalMs;
+
     public EndpointRegistrationService(EndpointAuthorizationRegistry endpointRegistry,
                                       CustomAuthorizationManager authorizationManager) {
         this.endpointRegistry = endpointRegistry;
         this.authorizationManager = authorizationManager;
+        this.leaseSweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "registry-lease-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        leaseSweeper.scheduleWithFixedDelay(this::removeExpiredModules, sweepIntervalMs, sweepIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        leaseSweeper.shutdownNow();
     }
 
     /**
@@ -40,44 +83,129 @@ public class EndpointRegistrationService {
      * @return true если регистрация успешна
      */
     public boolean registerEndpoint(String moduleName, String httpMethod, String path, String annotationType) {
-        try {
-            String key = httpMethod + ":" + path;
-            BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> authorizationMethod = 
-                getAuthorizationMethod(annotationType);
-            
-            if (authorizationMethod == null) {
-                log.warn("Unknown annotation type: {} for endpoint {}:{} from module {}", 
-                        annotationType, httpMethod, path, moduleName);
-                return false;
-            }
-            
-            endpointRegistry.register(key, authorizationMethod);
-            log.info("✓ Registered endpoint from module {}: {}:{} -> {}", 
-                    moduleName, httpMethod, path, annotationType);
-            return true;
-        } catch (Exception e) {
-            log.error("Error registering endpoint from module {}: {}:{}", 
-                     moduleName, httpMethod, path, e);
-            return false;
-        }
+        return registerEndpoints(moduleName, List.of(new EndpointInfo(httpMethod, path, annotationType))) == 1;
     }
 
     /**
-     * Регистрирует несколько эндпоинтов от модуля
+     * Регистрирует несколько эндпоинтов от модуля.
+     * Весь список сначала проверяется и превращается в правила, затем правила добавляются в слой модуля
+     * одной заменой таблицы: запросы не видят частично зарегистрированный список.
+     * В лог пишется одна итоговая строка; подробности по каждому эндпоинту - на уровне TRACE.
      * 
      * @param moduleName имя модуля
      * @param endpoints список эндпоинтов
      * @return количество успешно зарегистрированных эндпоинтов
      */
     public int registerEndpoints(String moduleName, List<EndpointInfo> endpoints) {
-        int registered = 0;
+        PendingManifest pending = beginManifest(moduleName);
+        pending.addAll(endpoints);
+        return pending.merge();
+    }
+
+    /**
+     * Снимает правила эндпоинтов, удаленных из модуля
+     * 
+     * @param moduleName имя модуля
+     * @param endpoints удаленные эндпоинты (используются метод и путь)
+     * @return количество снятых правил
+     */
+    public int unregisterEndpoints(String moduleName, List<EndpointInfo> endpoints) {
+        Set<String> removedKeys = new HashSet<>();
         for (EndpointInfo endpoint : endpoints) {
-            if (registerEndpoint(moduleName, endpoint.httpMethod, endpoint.path, endpoint.annotationType)) {
-                registered++;
+            removedKeys.add(endpoint.httpMethod + ":" + endpoint.path);
+            log.trace("Unregistered endpoint from module {}: {}:{}", moduleName, endpoint.httpMethod, endpoint.path);
+        }
+        endpointRegistry.applyDelta(moduleName, removedKeys, Collections.emptyMap());
+        log.info("Unregistered {} endpoints from module {}", removedKeys.size(), moduleName);
+        return endpoints.size();
+    }
+
+    /**
+     * Применяет список эндпоинтов модуля: полный или разницу относительно baseVersion.
+     * Полный список заменяет слой модуля целиком, поэтому эндпоинты, которых в нем нет, снимаются.
+     * Разница применяется только если baseVersion совпадает с примененной версией модуля.
+     * 
+     * @return количество зарегистрированных эндпоинтов или -1, если baseVersion не совпадает
+     */
+    public int applyManifest(String moduleName, String version, String baseVersion, boolean delta,
+                             List<EndpointInfo> endpoints, List<EndpointInfo> removed) {
+        return applyManifest(moduleName, version, baseVersion, delta, endpoints, removed, false);
+    }
+
+    /**
+     * Применяет список эндпоинтов модуля (см. выше) и, если leased = true, вместе с ним продлевает
+     * аренду слоя модуля. Аренда продлевается тем же изменением слоя, поэтому слой с истекшей арендой,
+     * получивший новый список, не снимается до продления.
+     *
+     * @return количество зарегистрированных эндпоинтов или -1, если baseVersion не совпадает
+     */
+    public int applyManifest(String moduleName, String version, String baseVersion, boolean delta,
+                             List<EndpointInfo> endpoints, List<EndpointInfo> removed, boolean leased) {
+        PendingManifest pending = beginManifest(moduleName);
+        if (endpoints != null) {
+            pending.addAll(endpoints);
+        }
+        if (delta && removed != null) {
+            pending.removeAll(removed);
+        }
+        return pending.commit(version, baseVersion, delta, leased);
+    }
+
+    /**
+     * Продлевает аренду слоя модуля (heartbeat).
+     * 
+     * @param version версия списка, которую модуль считает примененной (null - не проверять)
+     * @return false, если слоя модуля нет или применена другая версия - модуль должен отправить полный список
+     */
+    public boolean renewLease(String moduleName, String version) {
+        if (version != null && !version.equals(moduleVersions.get(moduleName))) {
+            return false;
+        }
+        return endpointRegistry.renewLease(moduleName, leaseMs);
+    }
+
+    /**
+     * Снимает слои модулей с истекшей арендой и забывает их версии
+     */
+    private void removeExpiredModules() {
+        try {
+            synchronized (this) {
+                for (String moduleName : endpointRegistry.removeExpiredLayers()) {
+                    moduleVersions.remove(moduleName);
+                }
             }
+        } catch (Exception e) {
+            log.error("Error removing modules with expired leases", e);
         }
-        log.info("Registered {}/{} endpoints from module {}", registered, endpoints.size(), moduleName);
-        return registered;
+    }
+
+    /**
+     * Начинает прием списка эндпоинтов модуля по частям (например, из потока NDJSON).
+     * Правила накапливаются в отдельном наборе и попадают в слой модуля только при commit().
+     */
+    public PendingManifest beginManifest(String moduleName) {
+        return new PendingManifest(moduleName);
+    }
+
+    /**
+     * Версия списка эндпоинтов модуля, которая сейчас применена, или null
+     */
+    public String getModuleVersion(String moduleName) {
+        return moduleVersions.get(moduleName);
+    }
+
+    /**
+     * Примененные версии списков эндпоинтов всех модулей
+     */
+    public Map<String, String> getModuleVersions() {
+        return new TreeMap<>(moduleVersions);
+    }
+
+    /**
+     * Количество правил в каждом слое реестра (локальный слой и слои модулей)
+     */
+    public Map<String, Integer> getLayerSizes() {
+        return endpointRegistry.getLayerSizes();
     }
 
     /**
@@ -103,6 +231,159 @@ public class EndpointRegistrationService {
         }
     }
 
+    /**
+     * Список эндпоинтов модуля, принимаемый по частям.
+     * Хранит только готовые правила, а не исходные записи, поэтому память не зависит от формата ответа.
+     */
+    public class PendingManifest {
+        private final String moduleName;
+        private final Map<String, BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>>> rules =
+                new HashMap<>();
+        private final Set<String> removedKeys = new HashSet<>();
+        private int received;
+        private int invalid;
+        private int missingFields;
+        private int unknownAnnotationTypes;
+        // Первая отброшенная запись - пример для итоговой строки лога
+        private String firstInvalid;
+
+        private PendingManifest(String moduleName) {
+            this.moduleName = moduleName;
+        }
+
+        /**
+         * Добавляет эндпоинты; записи с неизвестным типом аннотации или без метода и пути пропускаются
+         */
+        public void addAll(Collection<EndpointInfo> endpoints) {
+            for (EndpointInfo endpoint : endpoints) {
+                received++;
+                BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> authorizationMethod =
+                        endpoint.httpMethod != null && endpoint.path != null && endpoint.annotationType != null
+                                ? getAuthorizationMethod(endpoint.annotationType) : null;
+                if (authorizationMethod == null) {
+                    invalid++;
+                    if (endpoint.annotationType != null && endpoint.httpMethod != null && endpoint.path != null) {
+                        unknownAnnotationTypes++;
+                    } else {
+                        missingFields++;
+                    }
+                    if (firstInvalid == null) {
+                        firstInvalid = endpoint.httpMethod + ":" + endpoint.path + " -> " + endpoint.annotationType;
+                    }
+                    log.trace("Skipped invalid endpoint from module {}: {}:{} -> {}",
+                            moduleName, endpoint.httpMethod, endpoint.path, endpoint.annotationType);
+                    continue;
+                }
+                rules.put(endpoint.httpMethod + ":" + endpoint.path, authorizationMethod);
+                log.trace("Accepted endpoint from module {}: {}:{} -> {}",
+                        moduleName, endpoint.httpMethod, endpoint.path, endpoint.annotationType);
+            }
+        }
+
+        /**
+         * Отмечает эндпоинты как удаленные из модуля
+         */
+        public void removeAll(Collection<EndpointInfo> endpoints) {
+            for (EndpointInfo endpoint : endpoints) {
+                removedKeys.add(endpoint.httpMethod + ":" + endpoint.path);
+            }
+        }
+
+        /**
+         * Применяет накопленные правила к слою модуля одним вызовом:
+         * полный список заменяет слой, разница изменяет его
+         *
+         * @return количество зарегистрированных эндпоинтов или -1, если baseVersion не совпадает
+         */
+        public int commit(String version, String baseVersion, boolean delta) {
+            return commit(version, baseVersion, delta, false);
+        }
+
+        /**
+         * Применяет накопленные правила (см. выше); если leased = true, тем же изменением слоя
+         * продлевает его аренду. Список, полученный опросом (leased = false), продлевает аренду,
+         * только если она у слоя уже есть.
+         *
+         * @return количество зарегистрированных эндпоинтов или -1, если baseVersion не совпадает
+         */
+        public int commit(String version, String baseVersion, boolean delta, boolean leased) {
+            long lease = leased ? leaseMs : 0;
+            synchronized (EndpointRegistrationService.this) {
+                if (delta && (baseVersion == null || !baseVersion.equals(moduleVersions.get(moduleName)))) {
+                    log.info("Rejected changes from module {}: base version {} does not match applied version {}",
+                            moduleName, baseVersion, moduleVersions.get(moduleName));
+                    return -1;
+                }
+                if (delta) {
+                    endpointRegistry.applyDelta(moduleName, removedKeys, rules, lease);
+                } else {
+                    endpointRegistry.replaceLayer(moduleName, rules, lease);
+                }
+                if (!leased) {
+                    // Под той же блокировкой, что и снятие слоев с истекшей арендой
+                    endpointRegistry.renewExistingLease(moduleName, leaseMs);
+                }
+                if (version != null) {
+                    moduleVersions.put(moduleName, version);
+                }
+            }
+            log.info("Registered {} endpoints from module {} (version {}), {} removed, {} skipped as invalid",
+                    rules.size(), moduleName, version, removedKeys.size(), invalid);
+            logInvalid();
+            return rules.size();
+        }
+
+        /**
+         * Добавляет накопленные правила к слою модуля одной заменой таблицы,
+         * без проверки версии и без снятия остальных правил слоя
+         *
+         * @return количество зарегистрированных эндпоинтов
+         */
+        public int merge() {
+            synchronized (EndpointRegistrationService.this) {
+                endpointRegistry.applyDelta(moduleName, removedKeys, rules);
+            }
+            log.info("Registered {}/{} endpoints from module {}", rules.size(), received, moduleName);
+            logInvalid();
+            return rules.size();
+        }
+
+        /**
+         * Количество полученных записей
+         */
+        public int getReceived() {
+            return received;
+        }
+
+        /**
+         * Количество отброшенных записей
+         */
+        public int getInvalid() {
+            return invalid;
+        }
+
+        /**
+         * Количество записей без метода, пути или типа аннотации
+         */
+        public int getMissingFields() {
+            return missingFields;
+        }
+
+        /**
+         * Количество записей с неизвестным типом аннотации
+         */
+        public int getUnknownAnnotationTypes() {
+            return unknownAnnotationTypes;
+        }
+
+        private void logInvalid() {
+            if (invalid > 0) {
+                log.warn("Skipped {} invalid endpoints from module {} (unknown annotation type or missing fields), e.g. {}",
+                        invalid, moduleName, firstInvalid);
+            }
+        }
+    }
+
     /**
      * Информация об эндпоинте для регистрации
      */
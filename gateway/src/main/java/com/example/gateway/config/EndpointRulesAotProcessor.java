@@ -0,0 +1,103 @@
+package com.example.gateway.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.generate.GeneratedClass;
+import org.springframework.aot.generate.GeneratedMethod;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotContribution;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.env.Environment;
+
+import javax.lang.model.element.Modifier;
+import java.util.*;
+
+/**
+ * AOT-процессор, который на этапе сборки (Spring AOT / GraalVM native image) сканирует
+ * контроллеры и генерирует код, заполняющий PrecomputedEndpointRules.
+ * Во время работы приложения правила регистрируются из сгенерированного кода
+ * без сканирования classpath и без рефлексии.
+ *
+ * Подключается через META-INF/spring/aot.factories.
+ */
+public class EndpointRulesAotProcessor implements BeanFactoryInitializationAotProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(EndpointRulesAotProcessor.class);
+
+    // Ограничение размера сгенерированного метода (лимит JVM - 64 КБ байткода на метод)
+    private static final int RULES_PER_METHOD = 500;
+
+    @Override
+    public BeanFactoryInitializationAotContribution processAheadOfTime(ConfigurableListableBeanFactory beanFactory) {
+        if (beanFactory.getBeanNamesForType(ControllerScanner.class, false, false).length == 0) {
+            return null;
+        }
+
+        Environment environment = beanFactory.getBean(Environment.class);
+        List<String[]> rules = collectRules(environment);
+        log.info("Precomputed {} authorization rules for AOT", rules.size());
+
+        return (generationContext, beanFactoryInitializationCode) -> {
+            GeneratedClass generatedClass = generationContext.getGeneratedClasses()
+                    .addForFeatureComponent("EndpointRules", ControllerScanner.class,
+                            type -> type.addModifiers(Modifier.PUBLIC));
+
+            List<String> chunkMethods = new ArrayList<>();
+            for (int from = 0; from < rules.size(); from += RULES_PER_METHOD) {
+                List<String[]> chunk = rules.subList(from, Math.min(from + RULES_PER_METHOD, rules.size()));
+                GeneratedMethod chunkMethod = generatedClass.getMethods().add("addRules", method -> {
+                    method.addModifiers(Modifier.PRIVATE, Modifier.STATIC);
+                    method.addParameter(PrecomputedEndpointRules.class, "rules");
+                    for (String[] rule : chunk) {
+                        method.addStatement("rules.add($S, $S, $S)", rule[0], rule[1], rule[2]);
+                    }
+                });
+                chunkMethods.add(chunkMethod.getName());
+            }
+
+            GeneratedMethod registerMethod = generatedClass.getMethods().add("registerEndpointRules", method -> {
+                method.addModifiers(Modifier.PUBLIC, Modifier.STATIC);
+                method.addParameter(DefaultListableBeanFactory.class, "beanFactory");
+                method.addStatement("$T rules = new $T()", PrecomputedEndpointRules.class, PrecomputedEndpointRules.class);
+                for (String chunkMethod : chunkMethods) {
+                    method.addStatement("$L(rules)", chunkMethod);
+                }
+                method.addStatement("beanFactory.registerSingleton($S, rules)", PrecomputedEndpointRules.BEAN_NAME);
+            });
+
+            beanFactoryInitializationCode.addInitializer(registerMethod.toMethodReference());
+        };
+    }
+
+    /**
+     * Сканирует контроллеры с теми же настройками, что и ControllerScanner во время работы
+     * 
+     * @return список правил [класс контроллера, ключ эндпоинта, тип аннотации]
+     */
+    private List<String[]> collectRules(Environment environment) {
+        ClasspathIndex classpathIndex = new ClasspathIndex(
+                environment.getProperty("endpoint-scanner.include-packages", ""),
+                environment.getProperty("endpoint-scanner.exclude-packages", PackageFilter.DEFAULT_EXCLUDES));
+        boolean autoScanAll = environment.getProperty("endpoint-scanner.auto-scan-all", Boolean.class, false);
+        String scanPackages = environment.getProperty("endpoint-scanner.scan-packages",
+                "com.example.moduleA.controller,com.example.moduleB.controller");
+
+        List<ClasspathIndex.ControllerEntry> entries = autoScanAll
+                ? classpathIndex.findAllControllers()
+                : classpathIndex.findControllersInPackages(scanPackages);
+
+        List<String[]> rules = new ArrayList<>();
+        for (ClasspathIndex.ControllerEntry entry : entries) {
+            Class<?> controllerClass = entry.loadClass();
+            if (controllerClass == null) {
+                log.warn("Cannot load controller {} during AOT processing", entry.getClassName());
+                continue;
+            }
+            for (Map.Entry<String, String> rule : ControllerScanningUtils.findEndpointRules(controllerClass).entrySet()) {
+                rules.add(new String[] {entry.getClassName(), rule.getKey(), rule.getValue()});
+            }
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.gateway.config;
+
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+
+/**
+ * Подсказки для GraalVM native image.
+ * Правила авторизации в native image строятся на этапе AOT, поэтому рефлексия нужна
+ * только для JSON-биндинга DTO регистрации эндпоинтов удаленных модулей.
+ *
+ * Подключается через META-INF/spring/aot.factories.
+ */
+public class GatewayRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                EndpointRegistrationService.EndpointInfo.class,
+                EndpointRegistrationController.ManifestRegistration.class,
+                RemoteModuleScanner.ModuleEndpointsResponse.class,
+                RemoteModuleScanner.ManifestRecord.class);
+    }
+}
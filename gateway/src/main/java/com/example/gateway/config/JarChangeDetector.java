@@ -0,0 +1,192 @@
+package com.example.gateway.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Определяет, какие классы изменились в jar-файлах classpath.
+ *
+ * Для каждого jar хранится отпечаток: размер, время модификации и CRC class-файлов
+ * из центрального каталога. Пока размер и время не менялись, jar не открывается.
+ * После замены jar читается только его центральный каталог (без распаковки class-файлов),
+ * и сравнение CRC дает точный список добавленных, измененных и удаленных классов.
+ *
+ * Классы в fat-jar Spring Boot (BOOT-INF/classes/) учитываются под своими обычными именами.
+ */
+public class JarChangeDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(JarChangeDetector.class);
+
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String BOOT_CLASSES_PREFIX = "BOOT-INF/classes/";
+
+    private final ClasspathIndex classpathIndex;
+    private final Predicate<String> classFilter;
+
+    // Путь к jar -> отпечаток на момент последней проверки
+    private final Map<Path, JarFingerprint> fingerprints = new HashMap<>();
+
+    /**
+     * @param classFilter отбирает классы, изменения которых нужно отслеживать
+     */
+    public JarChangeDetector(ClasspathIndex classpathIndex, Predicate<String> classFilter) {
+        this.classpathIndex = classpathIndex;
+        this.classFilter = classFilter;
+    }
+
+    /**
+     * Запоминает текущее состояние всех jar-файлов classpath
+     */
+    public synchronized void init() {
+        fingerprints.clear();
+        for (Path jar : classpathIndex.findJarRoots()) {
+            JarFingerprint fingerprint = fingerprint(jar, null);
+            if (fingerprint != null) {
+                fingerprints.put(jar, fingerprint);
+            }
+        }
+        log.debug("Fingerprinted {} classpath jars", fingerprints.size());
+    }
+
+    /**
+     * Возвращает классы, которые были добавлены, изменены или удалены в jar-файлах
+     * с момента предыдущей проверки
+     */
+    public synchronized Set<String> detectChangedClasses() {
+        Set<String> changedClasses = new HashSet<>();
+        Set<Path> currentJars = new HashSet<>(classpathIndex.findJarRoots());
+
+        for (Path jar : currentJars) {
+            JarFingerprint previous = fingerprints.get(jar);
+            JarFingerprint current = fingerprint(jar, previous);
+            if (current == null) {
+                continue;
+            }
+            if (current != previous) {
+                Map<String, Long> previousCrcs = previous != null ? previous.classCrcs : Collections.emptyMap();
+                int before = changedClasses.size();
+                diff(previousCrcs, current.classCrcs, changedClasses);
+                if (previous != null) {
+                    log.debug("Jar {} was replaced: {} classes changed", jar, changedClasses.size() - before);
+                }
+            }
+            fingerprints.put(jar, current);
+        }
+
+        // Jar убран из classpath или удален - все его классы считаются удаленными
+        for (Iterator<Map.Entry<Path, JarFingerprint>> it = fingerprints.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, JarFingerprint> entry = it.next();
+            if (!currentJars.contains(entry.getKey()) || !Files.exists(entry.getKey())) {
+                changedClasses.addAll(entry.getValue().classCrcs.keySet());
+                it.remove();
+                log.debug("Jar {} was removed from classpath", entry.getKey());
+            }
+        }
+        return changedClasses;
+    }
+
+    /**
+     * Строит отпечаток jar. Если размер и время модификации совпадают с предыдущим
+     * отпечатком, возвращается он же без чтения jar.
+     */
+    private JarFingerprint fingerprint(Path jar, JarFingerprint previous) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+            long size = attributes.size();
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            if (previous != null && previous.size == size && previous.lastModified == lastModified) {
+                return previous;
+            }
+            return new JarFingerprint(size, lastModified, readClassCrcs(jar));
+        } catch (IOException e) {
+            log.debug("Cannot fingerprint jar {}: {}", jar, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Читает CRC отслеживаемых class-файлов из центрального каталога jar
+     */
+    private Map<String, Long> readClassCrcs(Path jar) throws IOException {
+        Map<String, Long> crcs = new HashMap<>();
+        try (JarFile jarFile = new JarFile(jar.toFile(), false)) {
+            for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
+                JarEntry entry = entries.nextElement();
+                String className = toClassName(entry.getName());
+                if (className != null && classFilter.test(className)) {
+                    // Отпечатки вложенных классов объединяются с отпечатком внешнего класса через XOR:
+                    // результат не зависит от порядка записей, а перемешивание имени записи с CRC
+                    // не дает двум изменениям (например, обмену содержимым двух вложенных классов)
+                    // взаимно погаситься, как при сложении CRC
+                    crcs.merge(className, mix(entry.getName(), entry.getCrc()), (a, b) -> a ^ b);
+                }
+            }
+        }
+        return crcs;
+    }
+
+    /**
+     * Перемешивает имя записи и ее CRC в 64-битное значение (финализатор SplitMix64)
+     */
+    private static long mix(String entryName, long crc) {
+        long value = ((long) entryName.hashCode() << 32) ^ crc;
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    private static void diff(Map<String, Long> previous, Map<String, Long> current, Set<String> changedClasses) {
+        for (Map.Entry<String, Long> entry : current.entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                changedClasses.add(entry.getKey());
+            }
+        }
+        for (String className : previous.keySet()) {
+            if (!current.containsKey(className)) {
+                changedClasses.add(className);
+            }
+        }
+    }
+
+    /**
+     * Имя внешнего класса по имени записи jar или null, если запись не class-файл приложения.
+     * Префикс BOOT-INF/classes/ fat-jar отбрасывается.
+     */
+    private static String toClassName(String entryName) {
+        if (entryName.startsWith(BOOT_CLASSES_PREFIX)) {
+            entryName = entryName.substring(BOOT_CLASSES_PREFIX.length());
+        }
+        if (!entryName.endsWith(CLASS_SUFFIX) || entryName.startsWith("META-INF/") ||
+            entryName.endsWith("module-info.class") || entryName.endsWith("package-info.class")) {
+            return null;
+        }
+        String className = entryName.substring(0, entryName.length() - CLASS_SUFFIX.length()).replace('/', '.');
+        int nested = className.indexOf('$');
+        return nested >= 0 ? className.substring(0, nested) : className;
+    }
+
+    /**
+     * Отпечаток jar-файла
+     */
+    private static class JarFingerprint {
+        private final long size;
+        private final long lastModified;
+        // Внешний класс -> объединенный отпечаток его class-файлов (см. mix)
+        private final Map<String, Long> classCrcs;
+
+        private JarFingerprint(long size, long lastModified, Map<String, Long> classCrcs) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.classCrcs = classCrcs;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.gateway.config;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Таблица правил авторизации, построенная на этапе Spring AOT (см. EndpointRulesAotProcessor).
+ * Если бин присутствует, ControllerScanner берет правила отсюда и не сканирует classpath
+ * и не использует рефлексию - это требуется для работы в GraalVM native image.
+ */
+public class PrecomputedEndpointRules {
+
+    public static final String BEAN_NAME = "precomputedEndpointRules";
+
+    // Класс контроллера -> (ключ эндпоинта -> тип аннотации безопасности)
+    private final Map<String, Map<String, String>> rulesByController = new LinkedHashMap<>();
+
+    /**
+     * Добавляет правило. Вызывается из сгенерированного на этапе AOT кода.
+     */
+    public void add(String controllerClass, String endpointKey, String annotationType) {
+        rulesByController.computeIfAbsent(controllerClass, key -> new LinkedHashMap<>())
+                .put(endpointKey, annotationType);
+    }
+
+    /**
+     * Возвращает правила, сгруппированные по классам контроллеров
+     */
+    public Map<String, Map<String, String>> getRulesByController() {
+        return Collections.unmodifiableMap(rulesByController);
+    }
+
+    /**
+     * Возвращает общее количество правил
+     */
+    public int size() {
+        return rulesByController.values().stream().mapToInt(Map::size).sum();
+    }
+}
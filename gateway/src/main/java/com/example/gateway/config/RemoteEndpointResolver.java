@@ -0,0 +1,267 @@
+package com.example.gateway.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Чтение правила у модуля при промахе (read-through).
+ *
+ * Если для запроса нет правила, а путь по префиксу принадлежит известному модулю (по правилам его слоя),
+ * gateway спрашивает у модуля только этот эндпоинт (GET {endpoints}/resolve?method=..&path=..).
+ * Найденное правило (с шаблоном пути) добавляется в слой модуля, поэтому следующие запросы к эндпоинту
+ * находят его в реестре без обращения к модулю. Так покрываются эндпоинты, появившиеся в модуле после
+ * последнего опроса.
+ *
+ * Одновременные промахи по одному пути объединяются в один запрос к модулю. Ожидание ограничено
+ * бюджетом gateway.remote-modules.read-through.budget-ms: если модуль не ответил вовремя, запрос
+ * обрабатывается как без правила, а ответ модуля, пришедший позже, все равно регистрируется.
+ * Модули с открытым circuit breaker не опрашиваются.
+ *
+ * Обращения к модулям ограничены по совпавшему префиксу пути (метод + префикс, см.
+ * EndpointAuthorizationRegistry.findPrefixOwners): одновременно выполняется не больше одного запроса
+ * на префикс, промахи по другим путям под ним ждут в очереди (не больше max-queued-per-prefix).
+ * Когда подходит очередь, путь сначала проверяется по реестру: правило, найденное предыдущим запросом
+ * (по шаблону пути), применяется без обращения к модулю. Отрицательный ответ кэшируется для метода
+ * и пути (с ограничением по размеру и времени жизни), поэтому новый эндпоинт под тем же префиксом
+ * находится сразу.
+ *
+ * Включается свойством gateway.remote-modules.read-through.enabled=true; работает для модулей
+ * из gateway.remote-modules.urls.
+ */
+@Component
+@ConditionalOnProperty(name = "gateway.remote-modules.read-through.enabled", havingValue = "true", matchIfMissing = false)
+public class RemoteEndpointResolver {
+
+    private static final Logger log = LoggerFactory.getLogger(RemoteEndpointResolver.class);
+
+    private final EndpointAuthorizationRegistry endpointRegistry;
+    private final EndpointRegistrationService registrationService;
+    private final RemoteModuleScanner remoteModuleScanner;
+    private final WebClient webClient;
+
+    // Запросы к модулям, которые выполняются или ждут очереди: метод:путь -> общий результат
+    private final ConcurrentMap<String, Mono<Boolean>> inFlight = new ConcurrentHashMap<>();
+    // Очереди запросов по префиксу: метод:префикс -> последний запрос в очереди и длина очереди
+    private final ConcurrentMap<String, PrefixQueue> prefixQueues = new ConcurrentHashMap<>();
+    // Пути, для которых модуль недавно не нашел эндпоинт: метод:путь
+    private final BoundedTtlCache<String, Boolean> notFound;
+
+    private final AtomicLong resolved = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    @Value("${gateway.remote-modules.endpoints:/api/module/endpoints}")
+    private String endpointsPath;
+
+    // Сколько запрос может ждать ответа модуля
+    @Value("${gateway.remote-modules.read-through.budget-ms:200}")
+    private long budgetMs;
+
+    // Сколько ждать ответа модуля в фоне, после того как бюджет запроса истек
+    @Value("${gateway.remote-modules.timeout:5000}")
+    private long timeoutMs;
+
+    // Сколько промахов по разным путям может ждать очереди на один префикс
+    @Value("${gateway.remote-modules.read-through.max-queued-per-prefix:32}")
+    private int maxQueuedPerPrefix;
+
+    public RemoteEndpointResolver(EndpointAuthorizationRegistry endpointRegistry,
+                                  EndpointRegistrationService registrationService,
+                                  RemoteModuleScanner remoteModuleScanner,
+                                  @Value("${gateway.remote-modules.read-through.negative-cache.max-size:10000}") int negativeCacheSize,
+                                  @Value("${gateway.remote-modules.read-through.negative-cache.ttl-ms:30000}") long negativeCacheTtlMs) {
+        this.endpointRegistry = endpointRegistry;
+        this.registrationService = registrationService;
+        this.remoteModuleScanner = remoteModuleScanner;
+        this.notFound = new BoundedTtlCache<>(negativeCacheSize, negativeCacheTtlMs);
+        this.webClient = WebClient.builder().build();
+    }
+
+    /**
+     * Пытается получить у модуля правило для запроса
+     *
+     * @return Mono с true, если правило найдено и добавлено в реестр
+     */
+    public Mono<Boolean> resolve(String method, String path) {
+        EndpointAuthorizationRegistry.PrefixOwners owners = endpointRegistry.findPrefixOwners(path);
+        if (owners == null) {
+            return Mono.just(false);
+        }
+        String key = method + ":" + path;
+        if (notFound.get(key) != null) {
+            return Mono.just(false);
+        }
+        List<String> modules = new ArrayList<>();
+        for (String moduleName : owners.layers) {
+            if (remoteModuleScanner.getAvailableModuleUrl(moduleName) != null) {
+                modules.add(moduleName);
+            }
+        }
+        if (modules.isEmpty()) {
+            return Mono.just(false);
+        }
+        String prefixKey = method + ":" + owners.prefix;
+        AtomicReference<Mono<Boolean>> joined = new AtomicReference<>();
+        AtomicReference<Mono<Boolean>> started = new AtomicReference<>();
+        prefixQueues.compute(prefixKey, (k, queue) -> {
+            Mono<Boolean> existing = inFlight.get(key);
+            if (existing != null) {
+                joined.set(existing);
+                return queue;
+            }
+            if (queue != null && queue.size >= maxQueuedPerPrefix) {
+                return queue;
+            }
+            // Запрос начинается, когда завершится предыдущий запрос по этому префиксу
+            Mono<Boolean> previous = queue != null ? queue.tail : Mono.just(false);
+            Mono<Boolean> lookup = previous
+                    .then(Mono.defer(() -> lookup(modules, method, path, key)))
+                    .doFinally(signal -> release(prefixKey, key))
+                    .cache();
+            inFlight.put(key, lookup);
+            joined.set(lookup);
+            started.set(lookup);
+            return new PrefixQueue(lookup, queue != null ? queue.size + 1 : 1);
+        });
+        Mono<Boolean> lookup = joined.get();
+        if (lookup == null) {
+            // Очередь префикса заполнена
+            throttled.incrementAndGet();
+            return Mono.just(false);
+        }
+        if (started.get() != null) {
+            // Запрос к модулю не отменяется по бюджету: ответ, пришедший позже, все равно попадет в реестр
+            lookup.subscribe();
+        }
+        return lookup.timeout(Duration.ofMillis(budgetMs), Mono.fromSupplier(() -> {
+            timeouts.incrementAndGet();
+            log.debug("Modules {} did not resolve {} {} within {} ms", modules, method, path, budgetMs);
+            return false;
+        }));
+    }
+
+    /**
+     * Запрос из очереди префикса. Правило могло появиться, пока запрос ждал очереди
+     * (например, предыдущий запрос нашел шаблон, которому соответствует и этот путь)
+     */
+    private Mono<Boolean> lookup(List<String> modules, String method, String path, String key) {
+        if (endpointRegistry.findAuthorizationMethod(method, path) != null) {
+            return Mono.just(true);
+        }
+        if (notFound.get(key) != null) {
+            return Mono.just(false);
+        }
+        return fetchRule(modules, method, path, key)
+                .timeout(Duration.ofMillis(timeoutMs))
+                .onErrorResume(e -> {
+                    errors.incrementAndGet();
+                    log.debug("Error resolving {} {} in modules {}: {}", method, path, modules, e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Снимает завершенный запрос с очереди префикса. Запросы префикса выполняются по очереди,
+     * поэтому когда длина очереди доходит до нуля, завершен и последний запрос
+     */
+    private void release(String prefixKey, String key) {
+        inFlight.remove(key);
+        prefixQueues.computeIfPresent(prefixKey,
+                (k, queue) -> queue.size <= 1 ? null : new PrefixQueue(queue.tail, queue.size - 1));
+    }
+
+    /**
+     * Спрашивает модули-кандидаты параллельно; первый найденный эндпоинт регистрируется в слое своего модуля
+     */
+    private Mono<Boolean> fetchRule(List<String> modules, String method, String path, String notFoundKey) {
+        return Flux.fromIterable(modules)
+            .flatMap(moduleName -> fetchEndpoint(moduleName, method, path)
+                    .map(endpoint -> Map.entry(moduleName, endpoint)))
+            .next()
+            // Регистрация копирует таблицу слоя - вне потока event loop
+            .publishOn(Schedulers.boundedElastic())
+            .map(found -> {
+                EndpointRegistrationService.EndpointInfo endpoint = found.getValue();
+                boolean registered = method.equals(endpoint.httpMethod)
+                        && registrationService.registerEndpoints(found.getKey(), List.of(endpoint)) == 1;
+                if (registered) {
+                    resolved.incrementAndGet();
+                    log.info("Resolved {} {} in module {}: {}:{} -> {}", method, path, found.getKey(),
+                            endpoint.httpMethod, endpoint.path, endpoint.annotationType);
+                }
+                return registered;
+            })
+            .switchIfEmpty(Mono.fromSupplier(() -> {
+                misses.incrementAndGet();
+                notFound.put(notFoundKey, Boolean.TRUE);
+                return false;
+            }));
+    }
+
+    /**
+     * Запрос эндпоинта у одного модуля; пустой Mono - у модуля нет такого эндпоинта
+     */
+    private Mono<EndpointRegistrationService.EndpointInfo> fetchEndpoint(String moduleName, String method, String path) {
+        String baseUrl = remoteModuleScanner.getAvailableModuleUrl(moduleName);
+        if (baseUrl == null) {
+            return Mono.empty();
+        }
+        return webClient.get()
+            .uri(baseUrl + endpointsPath + "/resolve?method={method}&path={path}", method, path)
+            .exchangeToMono(response -> {
+                if (response.statusCode().value() == 404) {
+                    return response.releaseBody().then(Mono.empty());
+                }
+                if (response.statusCode().isError()) {
+                    return response.createException().flatMap(Mono::error);
+                }
+                return response.bodyToMono(EndpointRegistrationService.EndpointInfo.class);
+            });
+    }
+
+    /**
+     * Статистика чтения правил у модулей
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("resolved", resolved.get());
+        statistics.put("misses", misses.get());
+        statistics.put("timeouts", timeouts.get());
+        statistics.put("errors", errors.get());
+        statistics.put("throttled", throttled.get());
+        statistics.put("inFlight", inFlight.size());
+        statistics.put("queuedPrefixes", prefixQueues.size());
+        statistics.put("negativeCacheSize", notFound.size());
+        statistics.put("negativeCacheEvictions", notFound.getEvictions());
+        return statistics;
+    }
+
+    /**
+     * Очередь запросов к модулям по префиксу: последний запрос и количество незавершенных
+     */
+    private static class PrefixQueue {
+        private final Mono<Boolean> tail;
+        private final int size;
+
+        private PrefixQueue(Mono<Boolean> tail, int size) {
+            this.tail = tail;
+            this.size = size;
+        }
+    }
+}
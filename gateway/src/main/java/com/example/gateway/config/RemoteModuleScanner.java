@@ -7,16 +7,47 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Сканер для получения информации об эндпоинтах от удаленных модулей (микросервисов).
  * Используется когда каждый модуль находится в отдельном контейнере.
  * 
  * Каждый модуль должен предоставлять endpoint для получения списка своих эндпоинтов.
+ *
+ * Модули опрашиваются параллельно (не больше gateway.remote-modules.concurrency одновременно),
+ * без блокировки на каждом запросе. Ответ модуля регистрируется сразу по получении.
+ * У каждого модуля свой срок (gateway.remote-modules.module-deadline), включающий все повторы
+ * с экспоненциальной задержкой и случайным разбросом. Поэтому недоступный модуль не задерживает
+ * остальные, и время сканирования близко ко времени самого медленного доступного модуля,
+ * а не к сумме времен всех модулей.
+ *
+ * Для каждого модуля запоминается версия его списка эндпоинтов (ETag). При повторном сканировании
+ * версия передается в If-None-Match и since: неизмененный модуль отвечает 304 без тела,
+ * а измененный - только разницей относительно известной версии.
+ *
+ * Если модуль умеет отдавать список в формате NDJSON (по записи на строку), список читается потоком:
+ * записи декодируются по одной и применяются частями к отдельному набору правил, который попадает
+ * в реестр только целиком. Память на разбор не зависит от размера модуля. Модули, отдающие только
+ * JSON, читаются как раньше, целиком (не больше 1 МБ).
+ *
+ * После старта модули опрашиваются периодически (gateway.remote-modules.refresh-interval).
+ * У каждого модуля свой график со случайным сдвигом и разбросом интервала, поэтому опросы разных
+ * модулей и разных экземпляров gateway не совпадают по времени. Для каждого модуля работает
+ * circuit breaker: после breaker.failure-threshold неудачных опросов подряд модуль не опрашивается
+ * breaker.open-duration, и этот срок растет экспоненциально с каждым следующим открытием (до
+ * breaker.max-open-duration). После срока выполняется один пробный опрос. Пока модуль недоступен,
+ * в реестре остаются правила последнего успешно полученного списка: ошибка опроса их не снимает.
  */
 @Component
 public class RemoteModuleScanner implements CommandLineRunner {
@@ -25,6 +56,10 @@ public class RemoteModuleScanner implements CommandLineRunner {
 
     private final EndpointRegistrationService registrationService;
     private final WebClient webClient;
+    private final StartupTimeline startupTimeline;
+    private final ScheduledExecutorService refreshScheduler;
+    // Модули из конфигурации вместе с состоянием их опроса; заполняется при первом обращении
+    private volatile Map<String, RemoteModule> modules;
 
     @Value("${gateway.remote-modules.enabled:false}")
     private boolean enabled;
@@ -41,14 +76,58 @@ public class RemoteModuleScanner implements CommandLineRunner {
     @Value("${gateway.remote-modules.retry-attempts:3}")
     private int retryAttempts;
 
+    // Таймаут одной попытки
     @Value("${gateway.remote-modules.timeout:5000}")
     private int timeoutMs;
 
-    public RemoteModuleScanner(EndpointRegistrationService registrationService) {
+    // Начальная задержка перед повтором; растет экспоненциально, со случайным разбросом
+    @Value("${gateway.remote-modules.retry-backoff:200}")
+    private long retryBackoffMs;
+
+    // Общий срок на модуль, включая все повторы
+    @Value("${gateway.remote-modules.module-deadline:10000}")
+    private long moduleDeadlineMs;
+
+    @Value("${gateway.remote-modules.concurrency:8}")
+    private int concurrency;
+
+    // Сколько записей потока NDJSON применяется за раз
+    @Value("${gateway.remote-modules.chunk-size:500}")
+    private int chunkSize;
+
+    // Интервал периодического опроса модулей; 0 - опрашивать только при старте
+    @Value("${gateway.remote-modules.refresh-interval:60000}")
+    private long refreshIntervalMs;
+
+    // Случайный разброс интервала опроса (доля интервала в обе стороны)
+    @Value("${gateway.remote-modules.refresh-jitter:0.2}")
+    private double refreshJitter;
+
+    @Value("${gateway.remote-modules.breaker.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${gateway.remote-modules.breaker.open-duration:30000}")
+    private long openDurationMs;
+
+    @Value("${gateway.remote-modules.breaker.max-open-duration:600000}")
+    private long maxOpenDurationMs;
+
+    public RemoteModuleScanner(EndpointRegistrationService registrationService, StartupTimeline startupTimeline) {
         this.registrationService = registrationService;
+        this.startupTimeline = startupTimeline;
         this.webClient = WebClient.builder()
             .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(1024 * 1024))
             .build();
+        this.refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "remote-module-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        refreshScheduler.shutdownNow();
     }
 
     @Override
@@ -60,26 +139,295 @@ public class RemoteModuleScanner implements CommandLineRunner {
 
         if (!scanOnStartup) {
             log.info("Remote module scanning on startup is disabled");
+        } else {
+            log.info("Starting remote module scanning...");
+            long start = System.currentTimeMillis();
+            scanAllModules();
+            startupTimeline.recordPhase(StartupTimeline.REMOTE_FETCH, System.currentTimeMillis() - start);
+        }
+        startRefresh();
+    }
+
+    /**
+     * Запускает периодический опрос модулей. Первый опрос каждого модуля - в случайный момент
+     * внутри интервала, чтобы опросы модулей не совпадали.
+     */
+    private void startRefresh() {
+        if (refreshIntervalMs <= 0 || getModules().isEmpty()) {
             return;
         }
+        for (RemoteModule module : getModules().values()) {
+            scheduleRefresh(module, ThreadLocalRandom.current().nextLong(refreshIntervalMs + 1));
+        }
+        log.info("Refreshing {} remote modules every {} ms (jitter {}%)",
+                getModules().size(), refreshIntervalMs, Math.round(refreshJitter * 100));
+    }
+
+    private void scheduleRefresh(RemoteModule module, long delayMs) {
+        if (!refreshScheduler.isShutdown()) {
+            refreshScheduler.schedule(() -> refresh(module), delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
 
-        log.info("Starting remote module scanning...");
-        scanAllModules();
+    /**
+     * Опрашивает модуль и планирует следующий опрос. Запрос выполняется без блокировки потока планировщика;
+     * следующий опрос планируется после его завершения, поэтому опросы одного модуля не пересекаются.
+     */
+    private void refresh(RemoteModule module) {
+        fetchModule(module.name, module.baseUrl)
+            .doFinally(signal -> scheduleRefresh(module, nextRefreshDelay(module)))
+            .subscribe();
     }
 
     /**
-     * Сканирует все настроенные модули
+     * Задержка до следующего опроса: интервал со случайным разбросом или,
+     * если circuit breaker открыт, время до пробного опроса
+     */
+    private long nextRefreshDelay(RemoteModule module) {
+        long untilProbe = module.openUntil - System.currentTimeMillis();
+        return untilProbe > 0 ? untilProbe : jittered(refreshIntervalMs, refreshJitter);
+    }
+
+    private static long jittered(long delayMs, double jitter) {
+        double factor = 1 - jitter + 2 * jitter * ThreadLocalRandom.current().nextDouble();
+        return Math.max(1, Math.round(delayMs * factor));
+    }
+
+    /**
+     * Сканирует все настроенные модули параллельно и ждет завершения всех
      */
     public void scanAllModules() {
-        if (moduleUrls == null || moduleUrls.trim().isEmpty()) {
-            log.warn("No remote modules configured. Set 'gateway.remote-modules.urls' property");
+        Collection<RemoteModule> modules = getModules().values();
+        if (modules.isEmpty()) {
             return;
         }
+        log.info("Scanning {} remote modules (concurrency {})", modules.size(), concurrency);
+
+        long start = System.currentTimeMillis();
+        Integer registered = Flux.fromIterable(modules)
+            .flatMap(module -> fetchModule(module.name, module.baseUrl), Math.max(1, concurrency))
+            .reduce(0, Integer::sum)
+            .block();
+        log.info("Remote module scanning finished in {} ms: registered {} endpoints from {} modules",
+                System.currentTimeMillis() - start, registered, modules.size());
+    }
+
+    /**
+     * Сканирует конкретный модуль
+     */
+    public void scanModule(String moduleName, String baseUrl) {
+        fetchModule(moduleName, baseUrl).block();
+    }
+
+    /**
+     * Загружает эндпоинты модуля и регистрирует их по получении.
+     * Ошибки не пробрасываются: недоступный модуль дает 0 зарегистрированных эндпоинтов,
+     * а его ранее полученные правила остаются в реестре. Результат учитывается circuit breaker модуля.
+     *
+     * @return Mono с количеством зарегистрированных эндпоинтов
+     */
+    public Mono<Integer> fetchModule(String moduleName, String baseUrl) {
+        RemoteModule module = getModules().get(moduleName);
+        return fetch(moduleName, baseUrl)
+            .doOnNext(registered -> {
+                if (module != null) {
+                    recordSuccess(module);
+                }
+            })
+            .onErrorResume(e -> {
+                log.error("Error scanning module {} at {}: {}", moduleName, baseUrl + endpointsPath, e.getMessage());
+                log.debug("Exception details", e);
+                if (module != null) {
+                    recordFailure(module, e);
+                }
+                return Mono.just(0);
+            });
+    }
+
+    private void recordSuccess(RemoteModule module) {
+        if (module.opens > 0) {
+            log.info("Module {} is reachable again, closing its circuit breaker", module.name);
+        }
+        module.consecutiveFailures = 0;
+        module.opens = 0;
+        module.openUntil = 0;
+        module.lastSuccessAt = System.currentTimeMillis();
+        module.lastError = null;
+    }
+
+    /**
+     * Учитывает неудачный опрос. После failure-threshold неудач подряд (или неудачного пробного опроса)
+     * открывает circuit breaker на время, которое удваивается с каждым открытием.
+     */
+    private void recordFailure(RemoteModule module, Throwable error) {
+        module.consecutiveFailures++;
+        module.lastError = error.getMessage();
+        if (module.opens == 0 && module.consecutiveFailures < failureThreshold) {
+            return;
+        }
+        module.opens++;
+        long openMs = jittered(Math.min(maxOpenDurationMs, openDurationMs << Math.min(module.opens - 1, 20)), 0.1);
+        module.openUntil = System.currentTimeMillis() + openMs;
+        String version = registrationService.getModuleVersion(module.name);
+        log.warn("Module {} failed {} times in a row, skipping it for {} ms; {}", module.name,
+                module.consecutiveFailures, openMs, version != null
+                        ? "keeping its rules of version " + version : "no rules received from it yet");
+    }
+
+    /**
+     * Запрос списка эндпоинтов модуля; ошибки (после всех повторов) пробрасываются
+     */
+    private Mono<Integer> fetch(String moduleName, String baseUrl) {
+        log.info("Scanning module {} at {}", moduleName, baseUrl);
+        
+        String url = baseUrl + endpointsPath;
+        String knownVersion = registrationService.getModuleVersion(moduleName);
+        String requestUrl = knownVersion != null ? url + "?since=" + knownVersion : url;
+        
+        return webClient.get()
+            .uri(requestUrl)
+            .accept(MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_JSON)
+            .headers(headers -> {
+                if (knownVersion != null) {
+                    headers.setIfNoneMatch("\"" + knownVersion + "\"");
+                }
+            })
+            .exchangeToMono(response -> {
+                if (response.statusCode().value() == 304) {
+                    log.debug("Endpoints of module {} not modified (version {})", moduleName, knownVersion);
+                    return response.releaseBody().thenReturn(0);
+                }
+                if (response.statusCode().isError()) {
+                    return response.createException().flatMap(Mono::error);
+                }
+                boolean streaming = response.headers().contentType()
+                        .map(MediaType.APPLICATION_NDJSON::isCompatibleWith)
+                        .orElse(false);
+                if (streaming) {
+                    return applyStream(moduleName, knownVersion, response.bodyToFlux(ManifestRecord.class));
+                }
+                return response.bodyToMono(ModuleEndpointsResponse.class)
+                        .map(body -> applyResponse(moduleName, knownVersion, body));
+            })
+            .timeout(Duration.ofMillis(timeoutMs))
+            .retryWhen(Retry.backoff(retryAttempts, Duration.ofMillis(retryBackoffMs)).jitter(0.5))
+            .timeout(Duration.ofMillis(moduleDeadlineMs))
+            .switchIfEmpty(Mono.fromSupplier(() -> {
+                log.warn("No endpoints received from module {}", moduleName);
+                return 0;
+            }));
+    }
+
+    /**
+     * Применяет ответ модуля в формате JSON: полный список или изменения.
+     * Изменения считаются от версии, отправленной в запросе (since, If-None-Match): если за время
+     * запроса версия модуля в реестре поменялась (например, модуль сам прислал список), изменения
+     * отбрасываются, а следующий опрос запросит их от новой версии.
+     *
+     * @param knownVersion версия, отправленная в запросе
+     * @return количество зарегистрированных эндпоинтов
+     */
+    private int applyResponse(String moduleName, String knownVersion, ModuleEndpointsResponse response) {
+        if (response.endpoints == null) {
+            log.warn("No endpoints received from module {}", moduleName);
+            return 0;
+        }
+
+        int registered = registrationService.applyManifest(moduleName, response.version,
+                knownVersion, response.delta, response.endpoints, response.removed);
+        if (response.delta) {
+            log.info("Applied changes from module {} (version {}): {} endpoints registered, {} removed",
+                    moduleName, response.version, Math.max(registered, 0),
+                    response.removed != null ? response.removed.size() : 0);
+        } else {
+            log.info("Successfully registered {}/{} endpoints from module {}", 
+                    registered, response.endpoints.size(), moduleName);
+        }
+        return Math.max(registered, 0);
+    }
+
+    /**
+     * Применяет поток записей NDJSON: первая запись - заголовок (версия, признак изменений),
+     * остальные - эндпоинты. Записи применяются частями по chunk-size к отдельному набору правил,
+     * который попадает в реестр одним вызовом после получения всего потока.
+     *
+     * @return Mono с количеством зарегистрированных эндпоинтов
+     */
+    private Mono<Integer> applyStream(String moduleName, String knownVersion, Flux<ManifestRecord> records) {
+        EndpointRegistrationService.PendingManifest pending = registrationService.beginManifest(moduleName);
+        ManifestRecord header = new ManifestRecord();
+        return records
+            .buffer(Math.max(1, chunkSize))
+            .doOnNext(chunk -> {
+                List<EndpointRegistrationService.EndpointInfo> added = new ArrayList<>(chunk.size());
+                List<EndpointRegistrationService.EndpointInfo> removed = new ArrayList<>();
+                for (ManifestRecord record : chunk) {
+                    if (record.isHeader()) {
+                        header.version = record.version;
+                        header.delta = record.delta;
+                    } else if (record.removed) {
+                        removed.add(record.toEndpointInfo());
+                    } else {
+                        added.add(record.toEndpointInfo());
+                    }
+                }
+                pending.addAll(added);
+                pending.removeAll(removed);
+                log.debug("Applied chunk of {} records from module {}", chunk.size(), moduleName);
+            })
+            .then(Mono.fromCallable(() -> Math.max(0, pending.commit(header.version, knownVersion, header.delta))));
+    }
+
+    /**
+     * Состояние опроса каждого модуля: circuit breaker, последний успешный опрос, последняя ошибка
+     */
+    public Map<String, Map<String, Object>> getModuleStatus() {
+        long now = System.currentTimeMillis();
+        Map<String, Map<String, Object>> status = new TreeMap<>();
+        for (RemoteModule module : getModules().values()) {
+            Map<String, Object> moduleStatus = new LinkedHashMap<>();
+            moduleStatus.put("url", module.baseUrl);
+            moduleStatus.put("circuit", module.opens == 0 ? "closed" : module.openUntil > now ? "open" : "half-open");
+            moduleStatus.put("consecutiveFailures", module.consecutiveFailures);
+            moduleStatus.put("openForMs", Math.max(0, module.openUntil - now));
+            moduleStatus.put("lastSuccessAt", module.lastSuccessAt > 0 ? Instant.ofEpochMilli(module.lastSuccessAt).toString() : null);
+            moduleStatus.put("lastError", module.lastError);
+            status.put(module.name, moduleStatus);
+        }
+        return status;
+    }
 
-        String[] modules = moduleUrls.split(",");
-        log.info("Scanning {} remote modules", modules.length);
+    /**
+     * Базовый URL модуля, если модуль есть в конфигурации и его circuit breaker не открыт; иначе null
+     */
+    public String getAvailableModuleUrl(String moduleName) {
+        RemoteModule module = getModules().get(moduleName);
+        return module != null && module.openUntil <= System.currentTimeMillis() ? module.baseUrl : null;
+    }
 
-        for (String moduleConfig : modules) {
+    private Map<String, RemoteModule> getModules() {
+        Map<String, RemoteModule> result = modules;
+        if (result == null) {
+            result = new LinkedHashMap<>();
+            for (RemoteModule module : parseModules()) {
+                result.put(module.name, module);
+            }
+            modules = result;
+        }
+        return result;
+    }
+
+    /**
+     * Разбирает gateway.remote-modules.urls в список модулей
+     */
+    private List<RemoteModule> parseModules() {
+        List<RemoteModule> modules = new ArrayList<>();
+        if (moduleUrls == null || moduleUrls.trim().isEmpty()) {
+            log.warn("No remote modules configured. Set 'gateway.remote-modules.urls' property");
+            return modules;
+        }
+
+        for (String moduleConfig : moduleUrls.split(",")) {
             String[] parts = moduleConfig.trim().split(":");
             if (parts.length < 2) {
                 log.warn("Invalid module configuration: {}. Expected format: moduleName:url", moduleConfig);
@@ -88,39 +436,53 @@ public class RemoteModuleScanner implements CommandLineRunner {
 
             String moduleName = parts[0].trim();
             String baseUrl = String.join(":", Arrays.copyOfRange(parts, 1, parts.length));
-            
-            scanModule(moduleName, baseUrl);
+            modules.add(new RemoteModule(moduleName, baseUrl));
         }
+        return modules;
     }
 
     /**
-     * Сканирует конкретный модуль
+     * Запись потока NDJSON: заголовок (moduleName, version, delta) или эндпоинт
+     * (httpMethod, path, annotationType; removed = true - эндпоинт удален из модуля)
      */
-    public void scanModule(String moduleName, String baseUrl) {
-        log.info("Scanning module {} at {}", moduleName, baseUrl);
-        
-        String url = baseUrl + endpointsPath;
-        
-        try {
-            ModuleEndpointsResponse response = webClient.get()
-                .uri(url)
-                .accept(MediaType.APPLICATION_JSON)
-                .retrieve()
-                .bodyToMono(ModuleEndpointsResponse.class)
-                .timeout(Duration.ofMillis(timeoutMs))
-                .retry(retryAttempts)
-                .block();
-
-            if (response != null && response.endpoints != null) {
-                int registered = registrationService.registerEndpoints(moduleName, response.endpoints);
-                log.info("Successfully registered {}/{} endpoints from module {}", 
-                        registered, response.endpoints.size(), moduleName);
-            } else {
-                log.warn("No endpoints received from module {}", moduleName);
-            }
-        } catch (Exception e) {
-            log.error("Error scanning module {} at {}: {}", moduleName, url, e.getMessage());
-            log.debug("Exception details", e);
+    public static class ManifestRecord {
+        public String moduleName;
+        public String version;
+        public boolean delta;
+        public String httpMethod;
+        public String path;
+        public String annotationType;
+        public boolean removed;
+
+        public ManifestRecord() {
+        }
+
+        boolean isHeader() {
+            return httpMethod == null && path == null;
+        }
+
+        EndpointRegistrationService.EndpointInfo toEndpointInfo() {
+            return new EndpointRegistrationService.EndpointInfo(httpMethod, path, annotationType);
+        }
+    }
+
+    /**
+     * Модуль из конфигурации: имя, базовый URL и состояние опроса.
+     * Опросы одного модуля не пересекаются, поэтому поля меняются последовательно.
+     */
+    private static class RemoteModule {
+        private final String name;
+        private final String baseUrl;
+        private volatile int consecutiveFailures;
+        // Сколько раз подряд открывался circuit breaker (0 - закрыт)
+        private volatile int opens;
+        private volatile long openUntil;
+        private volatile long lastSuccessAt;
+        private volatile String lastError;
+
+        private RemoteModule(String name, String baseUrl) {
+            this.name = name;
+            this.baseUrl = baseUrl;
         }
     }
 
@@ -129,7 +491,11 @@ public class RemoteModuleScanner implements CommandLineRunner {
      */
     public static class ModuleEndpointsResponse {
         public String moduleName;
+        public String version;
+        // true - endpoints содержит только изменения относительно запрошенной версии
+        public boolean delta;
         public List<EndpointRegistrationService.EndpointInfo> endpoints;
+        public List<EndpointRegistrationService.EndpointInfo> removed;
 
         public ModuleEndpointsResponse() {
         }
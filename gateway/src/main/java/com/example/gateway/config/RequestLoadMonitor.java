@@ -0,0 +1,79 @@
+package com.example.gateway.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Оценивает текущую нагрузку на gateway: частоту входящих запросов и загрузку CPU.
+ * Используется AutoRescanService, чтобы реже проверять изменения под нагрузкой.
+ *
+ * Запросы считаются WebFilter'ом без какой-либо обработки; частота вычисляется
+ * только при опросе, со сглаживанием между соседними опросами.
+ */
+@Component
+@ConditionalOnProperty(name = "gateway.auto-rescan.enabled", havingValue = "true", matchIfMissing = false)
+public class RequestLoadMonitor implements WebFilter, Ordered {
+
+    private final LongAdder requests = new LongAdder();
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+
+    private long lastSampleAt = System.nanoTime();
+    private long lastSampleCount = 0;
+    private double requestRate = 0;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        requests.increment();
+        return chain.filter(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    /**
+     * Возвращает частоту запросов (в секунду) с момента предыдущего вызова,
+     * сглаженную с предыдущим значением
+     */
+    public synchronized double sampleRequestRate() {
+        long now = System.nanoTime();
+        long count = requests.sum();
+        double elapsedSeconds = (now - lastSampleAt) / 1_000_000_000.0;
+        if (elapsedSeconds > 0) {
+            double currentRate = (count - lastSampleCount) / elapsedSeconds;
+            requestRate = (requestRate + currentRate) / 2;
+        }
+        lastSampleAt = now;
+        lastSampleCount = count;
+        return requestRate;
+    }
+
+    /**
+     * Последнее вычисленное значение частоты запросов (в секунду)
+     */
+    public synchronized double getRequestRate() {
+        return requestRate;
+    }
+
+    /**
+     * Загрузка CPU системы от 0 до 1 или -1, если JVM ее не сообщает
+     */
+    public double getCpuLoad() {
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean sunOsBean) {
+            return sunOsBean.getCpuLoad();
+        }
+        // Без расширения com.sun.management: средняя загрузка на процессор
+        double loadAverage = osBean.getSystemLoadAverage();
+        return loadAverage < 0 ? -1 : Math.min(1.0, loadAverage / osBean.getAvailableProcessors());
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.gateway.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Координатор пересканирования контроллеров.
+ *
+ * Все источники (стартовый CommandLineRunner, ControllerChangeWatcher, AutoRescanService)
+ * запрашивают пересканирование здесь, а не вызывают ControllerScanner напрямую.
+ * Одновременно выполняется не больше одного сканирования и ожидает не больше одного:
+ * запросы, пришедшие во время сканирования, объединяются в следующее
+ * (полное пересканирование поглощает пересканирование отдельных классов).
+ *
+ * Сканирование выполняется в собственном потоке, поэтому не занимает общий поток
+ * планировщика Spring. Ожидание сканирования при старте ограничено gateway.rescan.startup-wait-ms.
+ * Порог gateway.rescan.slow-scan-threshold-ms сканирование не прерывает: сканирования дольше
+ * порога только отмечаются в логе и в статистике.
+ *
+ * Ошибка одного сканирования (включая LinkageError при интроспекции измененного класса)
+ * завершает только его future: следующие запросы выполняются как обычно.
+ */
+@Component
+public class RescanCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(RescanCoordinator.class);
+
+    private final ControllerScanner controllerScanner;
+    private final ClasspathIndex classpathIndex;
+    private final ExecutorService executor;
+
+    @Value("${gateway.rescan.startup-wait-ms:30000}")
+    private long startupWaitMs;
+
+    @Value("${gateway.rescan.slow-scan-threshold-ms:30000}")
+    private long slowScanThresholdMs;
+
+    // Ожидающее сканирование (объединение всех запросов после начала текущего) или null
+    private RescanRequest pending;
+    private boolean running = false;
+
+    private final AtomicLong completedScans = new AtomicLong();
+    private final AtomicLong failedScans = new AtomicLong();
+    private final AtomicLong slowScans = new AtomicLong();
+    private final AtomicLong coalescedRequests = new AtomicLong();
+    private final AtomicLong lastScanDurationMs = new AtomicLong();
+    private final AtomicLong maxScanDurationMs = new AtomicLong();
+    private final AtomicInteger pendingClasses = new AtomicInteger();
+
+    public RescanCoordinator(ControllerScanner controllerScanner, ClasspathIndex classpathIndex) {
+        this.controllerScanner = controllerScanner;
+        this.classpathIndex = classpathIndex;
+        // Один поток и одна задача в очереди: задача обрабатывает все накопленные запросы
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), runnable -> {
+                    Thread thread = new Thread(runnable, "controller-rescan");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Запрашивает полное пересканирование контроллеров
+     */
+    public CompletableFuture<Void> requestFullRescan() {
+        return submit(true, Collections.emptySet());
+    }
+
+    /**
+     * Запрашивает пересканирование отдельных классов (добавленных, измененных или удаленных)
+     */
+    public CompletableFuture<Void> requestRescan(Set<String> classNames) {
+        if (classNames.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(false, classNames);
+    }
+
+    /**
+     * Выполняет полное пересканирование и ждет его завершения не дольше startup-wait-ms.
+     * Используется при старте: если сканирование не завершилось за это время, старт продолжается,
+     * а правила будут зарегистрированы по завершении сканирования.
+     */
+    public void rescanAndWait() {
+        try {
+            requestFullRescan().get(startupWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Controller scan did not finish within {} ms, continuing startup. " +
+                    "Rules will be registered when the scan completes", startupWaitMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Controller scan failed", e.getCause());
+        }
+    }
+
+    /**
+     * Статистика пересканирований: длительность, очередь, объединенные запросы
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("inFlight", running);
+        statistics.put("queueDepth", pending != null ? 1 : 0);
+        statistics.put("pendingFullRescan", pending != null && pending.full);
+        statistics.put("pendingClasses", pendingClasses.get());
+        statistics.put("completedScans", completedScans.get());
+        statistics.put("failedScans", failedScans.get());
+        statistics.put("coalescedRequests", coalescedRequests.get());
+        statistics.put("slowScans", slowScans.get());
+        statistics.put("lastScanDurationMs", lastScanDurationMs.get());
+        statistics.put("maxScanDurationMs", maxScanDurationMs.get());
+        statistics.put("slowScanThresholdMs", slowScanThresholdMs);
+        return statistics;
+    }
+
+    private synchronized CompletableFuture<Void> submit(boolean full, Set<String> classNames) {
+        if (pending == null) {
+            pending = new RescanRequest();
+        } else {
+            coalescedRequests.incrementAndGet();
+        }
+        pending.merge(full, classNames);
+        pendingClasses.set(pending.classNames.size());
+
+        CompletableFuture<Void> future = pending.future;
+        if (!running) {
+            running = true;
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Координатор остановлен
+                running = false;
+                pending = null;
+                pendingClasses.set(0);
+                future.completeExceptionally(e);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Освобождает координатор после ошибки, прервавшей drain(), и запускает ожидающие запросы
+     */
+    private synchronized void restartDrain() {
+        running = false;
+        if (pending != null && !executor.isShutdown()) {
+            running = true;
+            executor.execute(this::drain);
+        }
+    }
+
+    private synchronized RescanRequest takePending() {
+        RescanRequest request = pending;
+        pending = null;
+        pendingClasses.set(0);
+        if (request == null) {
+            running = false;
+        }
+        return request;
+    }
+
+    /**
+     * Выполняет ожидающие запросы, пока они есть
+     */
+    private void drain() {
+        RescanRequest request = null;
+        try {
+            while ((request = takePending()) != null) {
+                execute(request);
+            }
+        } catch (Throwable e) {
+            // Ошибка, которую не обработал execute(): без сброса running новые запросы
+            // только накапливались бы в pending и не выполнялись
+            failedScans.incrementAndGet();
+            if (request != null) {
+                request.future.completeExceptionally(e);
+            }
+            restartDrain();
+            throw e;
+        }
+    }
+
+    private void execute(RescanRequest request) {
+        long start = System.currentTimeMillis();
+        try {
+            if (request.full) {
+                controllerScanner.rescan();
+            } else {
+                classpathIndex.refreshClasses(request.classNames);
+                controllerScanner.rescanClasses(request.classNames);
+            }
+            completedScans.incrementAndGet();
+            request.future.complete(null);
+        } catch (Exception | LinkageError e) {
+            // LinkageError (например, NoClassDefFoundError) возможна при интроспекции измененного класса
+            failedScans.incrementAndGet();
+            log.error("Controller rescan failed", e);
+            request.future.completeExceptionally(e);
+        }
+
+        long duration = System.currentTimeMillis() - start;
+        lastScanDurationMs.set(duration);
+        maxScanDurationMs.accumulateAndGet(duration, Math::max);
+        if (duration > slowScanThresholdMs) {
+            slowScans.incrementAndGet();
+            log.warn("Controller rescan took {} ms, exceeding the slow scan threshold of {} ms", duration, slowScanThresholdMs);
+        }
+    }
+
+    /**
+     * Объединенный запрос на пересканирование
+     */
+    private static class RescanRequest {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final Set<String> classNames = new HashSet<>();
+        private boolean full;
+
+        private void merge(boolean fullRescan, Set<String> changedClasses) {
+            if (fullRescan) {
+                // Полное пересканирование охватывает все классы
+                full = true;
+                classNames.clear();
+            } else if (!full) {
+                classNames.addAll(changedClasses);
+            }
+        }
+    }
+}
@@ -6,7 +6,7 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Конфигурация для включения поддержки @Scheduled аннотаций.
- * Необходима для работы AutoRescanService.
+ * AutoRescanService планирует проверки сам (адаптивный интервал) и от нее не зависит.
  * 
  * Если в вашем проекте уже есть @EnableScheduling, этот класс не нужен.
  */
@@ -1,8 +1,11 @@
 package com.example.gateway.security;
 
 import com.example.gateway.config.EndpointAuthorizationRegistry;
+import com.example.gateway.config.RemoteEndpointResolver;
+import com.example.gateway.config.StartupTimeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.server.authorization.AuthorizationContext;
@@ -19,7 +22,8 @@ import java.util.function.BiFunction;
  * Полный цикл проверки:
  * 1. Получает путь и метод запроса
  * 2. Находит метод CustomAuthorizationManager из EndpointAuthorizationRegistry
- * 3. Вызывает соответствующий метод для проверки прав доступа
+ * 3. Если не найдено и включен режим read-through, запрашивает правило у модуля (RemoteEndpointResolver)
+ * 4. Вызывает соответствующий метод для проверки прав доступа
  */
 @Component
 public class AnnotationBasedAuthorizationChecker {
@@ -27,9 +31,15 @@ public class AnnotationBasedAuthorizationChecker {
     private static final Logger log = LoggerFactory.getLogger(AnnotationBasedAuthorizationChecker.class);
 
     private final EndpointAuthorizationRegistry endpointRegistry;
+    private final StartupTimeline startupTimeline;
+    private final RemoteEndpointResolver remoteResolver;
 
-    public AnnotationBasedAuthorizationChecker(EndpointAuthorizationRegistry endpointRegistry) {
+    public AnnotationBasedAuthorizationChecker(EndpointAuthorizationRegistry endpointRegistry,
+                                               StartupTimeline startupTimeline,
+                                               ObjectProvider<RemoteEndpointResolver> remoteResolver) {
         this.endpointRegistry = endpointRegistry;
+        this.startupTimeline = startupTimeline;
+        this.remoteResolver = remoteResolver.getIfAvailable();
     }
 
     /**
@@ -59,11 +69,34 @@ public class AnnotationBasedAuthorizationChecker {
             endpointRegistry.findAuthorizationMethod(method, path);
         
         if (authorizationMethod != null) {
-            // Вызываем соответствующий метод CustomAuthorizationManager
-            log.debug("Found authorization method for {} {}", method, path);
-            return authorizationMethod.apply(authenticationMono, context);
+            return applyAuthorizationMethod(authorizationMethod, authenticationMono, context, method, path);
         }
         
+        // Если не найдено, спрашиваем правило у модуля, которому принадлежит путь
+        if (remoteResolver != null) {
+            return remoteResolver.resolve(method, path)
+                    .flatMap(resolved -> {
+                        BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> resolvedMethod =
+                                resolved ? endpointRegistry.findAuthorizationMethod(method, path) : null;
+                        return resolvedMethod != null
+                                ? applyAuthorizationMethod(resolvedMethod, authenticationMono, context, method, path)
+                                : allowWithoutRule(method, path);
+                    });
+        }
+        
+        return allowWithoutRule(method, path);
+    }
+
+    private Mono<AuthorizationDecision> applyAuthorizationMethod(
+            BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> authorizationMethod,
+            Mono<Authentication> authenticationMono, AuthorizationContext context, String method, String path) {
+        // Вызываем соответствующий метод CustomAuthorizationManager
+        log.debug("Found authorization method for {} {}", method, path);
+        return authorizationMethod.apply(authenticationMono, context)
+                .doOnNext(decision -> startupTimeline.recordFirstDecision());
+    }
+
+    private Mono<AuthorizationDecision> allowWithoutRule(String method, String path) {
         // Если нет правила для эндпоинта, разрешаем доступ
         // (аутентификация уже проверена в другом проекте)
         log.debug("No authorization rule found for {} {}, allowing access", method, path);
@@ -0,0 +1,56 @@
+package com.example.gateway.config;
+
+import com.example.commons.security.annotation.RequireReadWare;
+import com.example.commons.security.annotation.RequireWriteWare;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.classreading.SimpleMetadataReaderFactory;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ControllerScanningUtilsTest {
+
+    @RestController
+    @RequestMapping("/api/items")
+    static class ItemController {
+
+        @GetMapping("/{id}")
+        @RequireReadWare
+        public String get(@PathVariable String id) {
+            return id;
+        }
+
+        @PostMapping
+        @RequireWriteWare
+        public void create() {
+        }
+
+        @DeleteMapping(path = "/{id}")
+        @RequireWriteWare
+        public void delete(@PathVariable String id) {
+        }
+
+        @GetMapping("/open")
+        public String open() {
+            return "open";
+        }
+    }
+
+    @Test
+    void rulesFromClassFileMatchRulesFromReflection() throws Exception {
+        AnnotationMetadata metadata = new SimpleMetadataReaderFactory()
+                .getMetadataReader(ItemController.class.getName())
+                .getAnnotationMetadata();
+
+        Map<String, String> rules = ControllerScanningUtils.findEndpointRules(metadata);
+
+        assertThat(rules).containsOnly(
+                Map.entry("GET:/api/items/{id}", "RequireReadWare"),
+                Map.entry("POST:/api/items", "RequireWriteWare"),
+                Map.entry("DELETE:/api/items/{id}", "RequireWriteWare"));
+        assertThat(rules).isEqualTo(ControllerScanningUtils.findEndpointRules(ItemController.class));
+    }
+}
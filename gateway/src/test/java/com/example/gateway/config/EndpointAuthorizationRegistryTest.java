@@ -0,0 +1,102 @@
+package com.example.gateway.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EndpointAuthorizationRegistryTest {
+
+    private static final BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> RULE =
+            (authentication, context) -> Mono.just(new AuthorizationDecision(true));
+
+    private final EndpointAuthorizationRegistry registry = new EndpointAuthorizationRegistry();
+
+    @Test
+    void overlappingRulesFollowLayerPrecedence() {
+        BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> alpha =
+                (authentication, context) -> Mono.just(new AuthorizationDecision(true));
+        BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> beta =
+                (authentication, context) -> Mono.just(new AuthorizationDecision(false));
+
+        // Слои модулей зарегистрированы не в алфавитном порядке; правило по шаблону есть у обоих
+        registry.replaceLayer("moduleZ", Map.of("GET:/api/shared/{id}", beta, "GET:/api/z", beta));
+        registry.replaceLayer("moduleA", Map.of("GET:/api/shared/{id}", alpha));
+        for (int i = 0; i < 20; i++) {
+            registry.replaceLayer("module" + i, Map.of("GET:/api/other" + i, beta));
+        }
+
+        assertThat(registry.findAuthorizationMethod("GET", "/api/shared/1")).isSameAs(alpha);
+        assertThat(registry.findPrefixOwners("/api/shared/1").layers).containsExactly("moduleA", "moduleZ");
+
+        // Локальный слой проверяется раньше слоев модулей
+        registry.register("GET:/api/shared/{id}", beta);
+        assertThat(registry.findAuthorizationMethod("GET", "/api/shared/1")).isSameAs(beta);
+
+        registry.clear();
+        registry.removeLayer("moduleA");
+        assertThat(registry.findAuthorizationMethod("GET", "/api/shared/1")).isSameAs(beta);
+    }
+
+    @Test
+    void expiredLayerIsRemovedAndCannotBeRenewed() throws Exception {
+        registry.replaceLayer("moduleA", Map.of("GET:/api/a", RULE), 1);
+        registry.replaceLayer("moduleB", Map.of("GET:/api/b", RULE), 60000);
+        registry.register("GET:/api/local", RULE);
+        Thread.sleep(5);
+
+        assertThat(registry.removeExpiredLayers()).containsExactly("moduleA");
+        assertThat(registry.findAuthorizationMethod("GET", "/api/a")).isNull();
+        assertThat(registry.findAuthorizationMethod("GET", "/api/b")).isNotNull();
+        assertThat(registry.findAuthorizationMethod("GET", "/api/local")).isNotNull();
+        assertThat(registry.renewLease("moduleA", 60000)).isFalse();
+        assertThat(registry.renewLease("moduleB", 60000)).isTrue();
+    }
+
+    @Test
+    void updateWithLeaseRevivesExpiredLayer() throws Exception {
+        registry.replaceLayer("moduleA", Map.of("GET:/api/a", RULE), 1);
+        Thread.sleep(5);
+
+        registry.applyDelta("moduleA", Set.of(), Map.of("POST:/api/a", RULE), 60000);
+
+        assertThat(registry.removeExpiredLayers()).isEmpty();
+        assertThat(registry.findAuthorizationMethod("POST", "/api/a")).isNotNull();
+    }
+
+    @Test
+    void registrationRacingWithSweepIsNeverLost() throws Exception {
+        int modules = 2000;
+        for (int i = 0; i < modules; i++) {
+            registry.replaceLayer("module" + i, Map.of("GET:/api/old" + i, RULE), 1);
+        }
+        Thread.sleep(5);
+
+        AtomicBoolean registering = new AtomicBoolean(true);
+        CompletableFuture<Void> sweeper = CompletableFuture.runAsync(() -> {
+            while (registering.get()) {
+                registry.removeExpiredLayers();
+            }
+        });
+        for (int i = 0; i < modules; i++) {
+            registry.replaceLayer("module" + i, Map.of("GET:/api/new" + i, RULE), 60000);
+        }
+        registering.set(false);
+        sweeper.get(10, TimeUnit.SECONDS);
+
+        assertThat(registry.removeExpiredLayers()).isEmpty();
+        for (int i = 0; i < modules; i++) {
+            assertThat(registry.findAuthorizationMethod("GET", "/api/new" + i)).as("module" + i).isNotNull();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.gateway.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EndpointRegistrationControllerTest {
+
+    private EndpointRegistrationService registrationService;
+    private EndpointRegistrationController controller;
+
+    @BeforeEach
+    void setUp() {
+        registrationService = mock(EndpointRegistrationService.class);
+        controller = new EndpointRegistrationController(registrationService, new ObjectMapper());
+        ReflectionTestUtils.setField(controller, "maxManifestBytes", 64 * 1024);
+        ReflectionTestUtils.setField(controller, "maxManifestDecompressedBytes", 1024 * 1024L);
+    }
+
+    @Test
+    void manifestIsLimitedAfterDecompression() throws IOException {
+        // Несколько килобайт в сжатом виде, 8 МБ после распаковки
+        byte[] padding = new byte[8 * 1024 * 1024];
+        Arrays.fill(padding, (byte) ' ');
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        json.write("{\"moduleName\":\"moduleA\",\"version\":\"v1\",".getBytes(StandardCharsets.UTF_8));
+        json.write(padding);
+        json.write("\"endpoints\":[]}".getBytes(StandardCharsets.UTF_8));
+        byte[] body = gzip(json.toByteArray());
+        assertThat(body.length).isLessThan(64 * 1024);
+
+        ResponseEntity<Map<String, Object>> response = post(body, true);
+
+        assertThat(response.getStatusCode().value()).isEqualTo(413);
+        verifyNoInteractions(registrationService);
+    }
+
+    @Test
+    void malformedManifestIsBadRequest() throws IOException {
+        assertThat(post("{\"moduleName\":".getBytes(StandardCharsets.UTF_8), false).getStatusCode().value())
+                .isEqualTo(400);
+        assertThat(post("not gzip".getBytes(StandardCharsets.UTF_8), true).getStatusCode().value())
+                .isEqualTo(400);
+        verifyNoInteractions(registrationService);
+    }
+
+    @Test
+    void compressedManifestIsApplied() throws IOException {
+        when(registrationService.applyManifest(eq("moduleA"), eq("v1"), isNull(), eq(false), any(), isNull(), eq(true)))
+                .thenReturn(1);
+        byte[] body = gzip(("{\"moduleName\":\"moduleA\",\"version\":\"v1\",\"endpoints\":[{\"httpMethod\":\"GET\","
+                + "\"path\":\"/api/a\",\"annotationType\":\"RequireReadWare\"}]}").getBytes(StandardCharsets.UTF_8));
+
+        ResponseEntity<Map<String, Object>> response = post(body, true);
+
+        assertThat(response.getStatusCode().value()).isEqualTo(200);
+        assertThat(response.getBody()).containsEntry("registered", 1);
+    }
+
+    private ResponseEntity<Map<String, Object>> post(byte[] body, boolean gzip) {
+        MockServerHttpRequest.BodyBuilder request = MockServerHttpRequest.post("/api/gateway/endpoints/manifest");
+        if (gzip) {
+            request.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return controller.registerManifest(request.body(Mono.just(DefaultDataBufferFactory.sharedInstance.wrap(body))))
+                .block();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.gateway.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JarChangeDetectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void swappedNestedClassesOfFatJarAreDetected() throws IOException {
+        Path jar = tempDir.resolve("module.jar");
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("BOOT-INF/classes/com/example/module/OrderController.class", "outer");
+        entries.put("BOOT-INF/classes/com/example/module/OrderController$1.class", "first");
+        entries.put("BOOT-INF/classes/com/example/module/OrderController$2.class", "second");
+        entries.put("BOOT-INF/classes/com/example/module/ItemController.class", "items");
+        writeJar(jar, entries, 1_000_000L);
+
+        ClasspathIndex classpathIndex = mock(ClasspathIndex.class);
+        when(classpathIndex.findJarRoots()).thenReturn(List.of(jar));
+        JarChangeDetector detector = new JarChangeDetector(classpathIndex, className -> true);
+        detector.init();
+
+        // Сумма CRC вложенных классов не меняется, если они обменялись содержимым
+        entries.put("BOOT-INF/classes/com/example/module/OrderController$1.class", "second");
+        entries.put("BOOT-INF/classes/com/example/module/OrderController$2.class", "first");
+        writeJar(jar, entries, 2_000_000L);
+
+        assertThat(detector.detectChangedClasses()).containsExactly("com.example.module.OrderController");
+    }
+
+    private static void writeJar(Path jar, Map<String, String> entries, long lastModified) throws IOException {
+        try (OutputStream file = Files.newOutputStream(jar);
+             JarOutputStream out = new JarOutputStream(file)) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey()));
+                out.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(lastModified));
+    }
+}
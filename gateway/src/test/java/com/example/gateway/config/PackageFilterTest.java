@@ -0,0 +1,38 @@
+package com.example.gateway.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackageFilterTest {
+
+    @Test
+    void includesRestrictScannedPackages() {
+        PackageFilter filter = PackageFilter.of("com.acme", PackageFilter.DEFAULT_EXCLUDES);
+
+        assertThat(filter.accepts("com.acme.billing.BillingController")).isTrue();
+        assertThat(filter.accepts("org.springframework.web.Foo")).isFalse();
+        assertThat(filter.canSkipSubtree("com")).isFalse();
+        assertThat(filter.canSkipSubtree("org.other")).isTrue();
+    }
+
+    @Test
+    void moduleNameOutsideIncludesIsNotExcluded() {
+        PackageFilter filter = PackageFilter.of("com.acme", PackageFilter.DEFAULT_EXCLUDES);
+
+        // Automatic-Module-Name: billing у jar с классами com.acme.billing.*
+        assertThat(filter.canSkipSubtree("billing")).isTrue();
+        assertThat(filter.isExcludedSubtree("billing")).isFalse();
+        assertThat(filter.isExcludedSubtree("com.acme.billing")).isFalse();
+    }
+
+    @Test
+    void explicitlyExcludedModuleNameIsExcluded() {
+        PackageFilter filter = PackageFilter.of("com.acme,org.springframework.custom", PackageFilter.DEFAULT_EXCLUDES);
+
+        assertThat(filter.isExcludedSubtree("org.springframework.web")).isTrue();
+        assertThat(filter.isExcludedSubtree("com.fasterxml.jackson.databind")).isTrue();
+        // Внутри исключенного пакета есть включенный подпакет
+        assertThat(filter.isExcludedSubtree("org.springframework")).isFalse();
+    }
+}
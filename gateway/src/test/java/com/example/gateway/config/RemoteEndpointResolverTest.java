@@ -0,0 +1,168 @@
+package com.example.gateway.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RemoteEndpointResolverTest {
+
+    private static final BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> RULE =
+            (authentication, context) -> Mono.just(new AuthorizationDecision(true));
+
+    private final EndpointAuthorizationRegistry registry = new EndpointAuthorizationRegistry();
+    private final AtomicInteger moduleRequests = new AtomicInteger();
+    private final EndpointRegistrationService registrationService = mock(EndpointRegistrationService.class);
+    // Пока не открыт, модуль не отвечает на запросы путей со "slow"
+    private volatile CountDownLatch slowModule = new CountDownLatch(0);
+    private HttpServer server;
+    private RemoteEndpointResolver resolver;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/module/endpoints/resolve", exchange -> {
+            moduleRequests.incrementAndGet();
+            String query = exchange.getRequestURI().getQuery();
+            if (query.contains("slow")) {
+                try {
+                    slowModule.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (query.contains("/new/")) {
+                byte[] body = "{\"httpMethod\":\"GET\",\"path\":\"/api/a/new/{id}\",\"annotationType\":\"RequireReadWare\"}"
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+                return;
+            }
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+
+        RemoteModuleScanner scanner = mock(RemoteModuleScanner.class);
+        when(scanner.getAvailableModuleUrl(anyString()))
+                .thenReturn("http://127.0.0.1:" + server.getAddress().getPort());
+        when(registrationService.registerEndpoints(eq("moduleA"), anyList())).thenReturn(1);
+        resolver = new RemoteEndpointResolver(registry, registrationService, scanner, 100, 60000);
+        ReflectionTestUtils.setField(resolver, "endpointsPath", "/api/module/endpoints");
+        ReflectionTestUtils.setField(resolver, "budgetMs", 5000L);
+        ReflectionTestUtils.setField(resolver, "timeoutMs", 5000L);
+        ReflectionTestUtils.setField(resolver, "maxQueuedPerPrefix", 32);
+
+        registry.replaceLayer("moduleA", Map.of("GET:/api/a/items/{id}", RULE));
+        registry.replaceLayer("moduleB", Map.of("GET:/api/b/orders/{id}", RULE));
+    }
+
+    @AfterEach
+    void tearDown() {
+        slowModule.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void sharedOneSegmentPrefixDoesNotFanOut() {
+        assertThat(registry.findPrefixOwners("/api/unknown/probe")).isNull();
+
+        assertThat(resolver.resolve("GET", "/api/unknown/probe").block()).isFalse();
+        assertThat(resolver.resolve("GET", "/api/other").block()).isFalse();
+
+        assertThat(moduleRequests.get()).isZero();
+    }
+
+    @Test
+    void missIsCachedPerPath() {
+        assertThat(resolver.resolve("GET", "/api/a/random-1").block()).isFalse();
+        assertThat(resolver.resolve("GET", "/api/a/random-1").block()).isFalse();
+        assertThat(moduleRequests.get()).isEqualTo(1);
+
+        // Промах по одному пути не скрывает новый эндпоинт под тем же префиксом
+        assertThat(resolver.resolve("GET", "/api/a/new/1").block()).isTrue();
+        assertThat(resolver.resolve("POST", "/api/a/random-1").block()).isFalse();
+        assertThat(moduleRequests.get()).isEqualTo(3);
+    }
+
+    @Test
+    void concurrentLookupsUnderOnePrefixAreQueued() throws Exception {
+        slowModule = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> slow = resolver.resolve("GET", "/api/a/slow-1").toFuture();
+        waitForModuleRequests(1);
+        CompletableFuture<Boolean> queued = resolver.resolve("GET", "/api/a/new/2").toFuture();
+
+        // Второй путь ждет, пока модуль ответит на первый, а не получает "нет правила"
+        Thread.sleep(200);
+        assertThat(queued).isNotDone();
+        assertThat(moduleRequests.get()).isEqualTo(1);
+
+        slowModule.countDown();
+        assertThat(slow.get(10, TimeUnit.SECONDS)).isFalse();
+        assertThat(queued.get(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(moduleRequests.get()).isEqualTo(2);
+        assertThat(resolver.getStatistics()).containsEntry("throttled", 0L);
+    }
+
+    @Test
+    void lookupBeyondPrefixQueueLimitIsThrottled() throws Exception {
+        ReflectionTestUtils.setField(resolver, "maxQueuedPerPrefix", 1);
+        slowModule = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> slow = resolver.resolve("GET", "/api/a/slow-1").toFuture();
+        waitForModuleRequests(1);
+
+        assertThat(resolver.resolve("GET", "/api/a/new/2").block()).isFalse();
+        assertThat(resolver.getStatistics()).containsEntry("throttled", 1L);
+
+        slowModule.countDown();
+        assertThat(slow.get(10, TimeUnit.SECONDS)).isFalse();
+        assertThat(moduleRequests.get()).isEqualTo(1);
+    }
+
+    private void waitForModuleRequests(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (moduleRequests.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(moduleRequests.get()).isEqualTo(expected);
+    }
+
+    @Test
+    void oneSegmentPrefixOfSingleModuleIsUsed() {
+        registry.replaceLayer("moduleC", Map.of("GET:/reports/{id}", RULE));
+
+        EndpointAuthorizationRegistry.PrefixOwners owners = registry.findPrefixOwners("/reports/daily/export");
+
+        assertThat(owners).isNotNull();
+        assertThat(owners.prefix).isEqualTo("/reports");
+        assertThat(owners.layers).isEqualTo(List.of("moduleC"));
+    }
+}
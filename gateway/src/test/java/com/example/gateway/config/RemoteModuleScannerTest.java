@@ -0,0 +1,145 @@
+package com.example.gateway.config;
+
+import com.example.gateway.security.CustomAuthorizationManager;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class RemoteModuleScannerTest {
+
+    private final EndpointAuthorizationRegistry registry = new EndpointAuthorizationRegistry();
+    private EndpointRegistrationService registrationService;
+    private RemoteModuleScanner scanner;
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        registrationService = new EndpointRegistrationService(registry, mock(CustomAuthorizationManager.class));
+        ReflectionTestUtils.setField(registrationService, "leaseMs", 60000L);
+        scanner = new RemoteModuleScanner(registrationService, new StartupTimeline());
+        ReflectionTestUtils.setField(scanner, "endpointsPath", "/api/module/endpoints");
+        ReflectionTestUtils.setField(scanner, "moduleUrls", "");
+        ReflectionTestUtils.setField(scanner, "timeoutMs", 5000);
+        ReflectionTestUtils.setField(scanner, "retryAttempts", 0);
+        ReflectionTestUtils.setField(scanner, "retryBackoffMs", 10L);
+        ReflectionTestUtils.setField(scanner, "moduleDeadlineMs", 10000L);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        scanner.shutdown();
+        registrationService.shutdown();
+    }
+
+    @Test
+    void deltaAgainstRequestedVersionIsRejectedAfterConcurrentPush() {
+        registrationService.applyManifest("moduleA", "v1", null, false,
+                List.of(new EndpointRegistrationService.EndpointInfo("GET", "/api/a/old", "RequireReadWare")), null);
+
+        server.createContext("/api/module/endpoints", exchange -> {
+            assertThat(exchange.getRequestURI().getQuery()).isEqualTo("since=v1");
+            // Пока модуль готовит разницу от v1, он сам присылает полный список v2
+            registrationService.applyManifest("moduleA", "v2", null, false,
+                    List.of(new EndpointRegistrationService.EndpointInfo("GET", "/api/a/pushed", "RequireReadWare")),
+                    null);
+            byte[] body = ("{\"moduleName\":\"moduleA\",\"version\":\"v3\",\"delta\":true,"
+                    + "\"endpoints\":[{\"httpMethod\":\"POST\",\"path\":\"/api/a/new\",\"annotationType\":\"RequireWriteWare\"}],"
+                    + "\"removed\":[{\"httpMethod\":\"GET\",\"path\":\"/api/a/old\"}]}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+
+        Integer registered = scanner.fetchModule("moduleA", baseUrl()).block();
+
+        assertThat(registered).isZero();
+        assertThat(registrationService.getModuleVersion("moduleA")).isEqualTo("v2");
+        assertThat(registry.findAuthorizationMethod("GET", "/api/a/pushed")).isNotNull();
+        assertThat(registry.findAuthorizationMethod("POST", "/api/a/new")).isNull();
+    }
+
+    @Test
+    void deltaAgainstRequestedVersionIsApplied() {
+        registrationService.applyManifest("moduleA", "v1", null, false,
+                List.of(new EndpointRegistrationService.EndpointInfo("GET", "/api/a/old", "RequireReadWare")), null);
+
+        server.createContext("/api/module/endpoints", exchange -> {
+            byte[] body = ("{\"moduleName\":\"moduleA\",\"version\":\"v2\",\"delta\":true,"
+                    + "\"endpoints\":[{\"httpMethod\":\"POST\",\"path\":\"/api/a/new\",\"annotationType\":\"RequireWriteWare\"}],"
+                    + "\"removed\":[{\"httpMethod\":\"GET\",\"path\":\"/api/a/old\"}]}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+
+        Integer registered = scanner.fetchModule("moduleA", baseUrl()).block();
+
+        assertThat(registered).isEqualTo(1);
+        assertThat(registrationService.getModuleVersion("moduleA")).isEqualTo("v2");
+        assertThat(registry.findAuthorizationMethod("POST", "/api/a/new")).isNotNull();
+        assertThat(registry.findAuthorizationMethod("GET", "/api/a/old")).isNull();
+    }
+
+    @Test
+    void pollRenewsLeaseOfModuleThatPushedBefore() throws Exception {
+        ReflectionTestUtils.setField(registrationService, "leaseMs", 500L);
+        registrationService.applyManifest("moduleA", "v1", null, false,
+                List.of(new EndpointRegistrationService.EndpointInfo("GET", "/api/a/items", "RequireReadWare")),
+                null, true);
+
+        server.createContext("/api/module/endpoints", exchange -> {
+            byte[] body = ("{\"moduleName\":\"moduleA\",\"version\":\"v2\","
+                    + "\"endpoints\":[{\"httpMethod\":\"GET\",\"path\":\"/api/a/items\",\"annotationType\":\"RequireReadWare\"}]}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+
+        Thread.sleep(400);
+        assertThat(scanner.fetchModule("moduleA", baseUrl()).block()).isEqualTo(1);
+        // Аренда, выданная при отправке списка, истекла бы к этому моменту без продления опросом
+        Thread.sleep(300);
+        ReflectionTestUtils.invokeMethod(registrationService, "removeExpiredModules");
+
+        assertThat(registrationService.getModuleVersion("moduleA")).isEqualTo("v2");
+        assertThat(registry.findAuthorizationMethod("GET", "/api/a/items")).isNotNull();
+    }
+
+    @Test
+    void pollDoesNotLeaseModuleThatNeverPushed() throws Exception {
+        registrationService.applyManifest("moduleA", "v1", null, false,
+                List.of(new EndpointRegistrationService.EndpointInfo("GET", "/api/a/items", "RequireReadWare")), null);
+
+        assertThat(registry.renewExistingLease("moduleA", 1)).isFalse();
+        Thread.sleep(5);
+        ReflectionTestUtils.invokeMethod(registrationService, "removeExpiredModules");
+
+        assertThat(registrationService.getModuleVersion("moduleA")).isEqualTo("v1");
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+}
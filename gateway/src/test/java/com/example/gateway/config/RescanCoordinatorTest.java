@@ -0,0 +1,106 @@
+package com.example.gateway.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RescanCoordinatorTest {
+
+    private ControllerScanner controllerScanner;
+    private ClasspathIndex classpathIndex;
+    private RescanCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        controllerScanner = mock(ControllerScanner.class);
+        classpathIndex = mock(ClasspathIndex.class);
+        coordinator = new RescanCoordinator(controllerScanner, classpathIndex);
+        ReflectionTestUtils.setField(coordinator, "startupWaitMs", 1000L);
+        ReflectionTestUtils.setField(coordinator, "slowScanThresholdMs", 1000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.shutdown();
+    }
+
+    @Test
+    void linkageErrorFailsOnlyItsRequest() throws Exception {
+        doThrow(new NoClassDefFoundError("com/acme/Removed"))
+                .doNothing()
+                .when(controllerScanner).rescanClasses(any());
+
+        CompletableFuture<Void> failed = coordinator.requestRescan(Set.of("com.acme.FooController"));
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(NoClassDefFoundError.class);
+
+        coordinator.requestRescan(Set.of("com.acme.FooController")).get(5, TimeUnit.SECONDS);
+        awaitIdle();
+        assertThat(coordinator.getStatistics())
+                .containsEntry("failedScans", 1L)
+                .containsEntry("completedScans", 1L);
+    }
+
+    @Test
+    void unexpectedErrorDoesNotStopLaterRescans() throws Exception {
+        doThrow(new AssertionError("boom"))
+                .doNothing()
+                .when(controllerScanner).rescan();
+
+        CompletableFuture<Void> failed = coordinator.requestFullRescan();
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(AssertionError.class);
+
+        coordinator.requestFullRescan().get(5, TimeUnit.SECONDS);
+        verify(controllerScanner, times(2)).rescan();
+    }
+
+    @Test
+    void requestsDuringScanAreCoalescedIntoOne() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).doNothing().when(controllerScanner).rescan();
+
+        CompletableFuture<Void> first = coordinator.requestFullRescan();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Void> second = coordinator.requestRescan(Set.of("com.acme.A"));
+        CompletableFuture<Void> third = coordinator.requestFullRescan();
+        assertThat(second).isSameAs(third);
+
+        release.countDown();
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+        verify(controllerScanner, times(2)).rescan();
+        verify(controllerScanner, never()).rescanClasses(any());
+        assertThat(coordinator.getStatistics()).containsEntry("coalescedRequests", 1L);
+    }
+
+    /**
+     * Future завершается до того, как поток координатора освобождается
+     */
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Boolean.TRUE.equals(coordinator.getStatistics().get("inFlight"))) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
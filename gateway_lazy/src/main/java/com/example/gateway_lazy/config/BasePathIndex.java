@@ -0,0 +1,178 @@
+package com.example.gateway_lazy.config;
+
+import java.util.*;
+
+/**
+ * Префиксное дерево базовых путей контроллеров (@RequestMapping на классе) по сегментам пути.
+ * Строится по записям ClasspathIndex - без загрузки классов и рефлексии. Контроллер с несколькими
+ * базовыми путями добавляется под каждым из них.
+ *
+ * По пути запроса возвращает контроллеры, чей базовый путь является префиксом пути,
+ * начиная с самого длинного совпадения. Сегменты с переменными ({id}) и шаблонами (*)
+ * совпадают с любым сегментом. Контроллеры без базового пути подходят к любому пути
+ * и возвращаются последними.
+ *
+ * Вместе с кандидатами возвращается ключ совпадения - шаблоны базовых путей, совпавших с путем.
+ * У всех путей с одинаковым ключом одинаковые кандидаты, поэтому результат поиска можно
+ * кэшировать по ключу, а не по конкретному пути.
+ */
+public class BasePathIndex {
+
+    private static final String WILDCARD = "*";
+
+    private final Node root = new Node("");
+    private final Set<String> classNames = new HashSet<>();
+
+    /**
+     * Строит индекс по записям индекса classpath
+     */
+    public static BasePathIndex build(Collection<ClasspathIndex.ControllerEntry> entries) {
+        BasePathIndex index = new BasePathIndex();
+        for (ClasspathIndex.ControllerEntry entry : entries) {
+            if (entry.getBasePaths().isEmpty()) {
+                index.add("", entry.getClassName());
+            }
+            for (String basePath : entry.getBasePaths()) {
+                index.add(basePath, entry.getClassName());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Добавляет контроллер с указанным базовым путем
+     */
+    public void add(String basePath, String className) {
+        Node node = root;
+        StringBuilder template = new StringBuilder();
+        for (String segment : segments(basePath)) {
+            String key = isPattern(segment) ? WILDCARD : segment;
+            template.append('/').append(key);
+            String nodeTemplate = template.toString();
+            node = node.children.computeIfAbsent(key, s -> new Node(nodeTemplate));
+        }
+        node.controllers.add(className);
+        classNames.add(className);
+    }
+
+    /**
+     * Возвращает контроллеры, базовый путь которых - префикс пути запроса.
+     * Сначала идут контроллеры с самым длинным совпавшим префиксом.
+     */
+    public List<String> findCandidates(String path) {
+        return match(path).getCandidates();
+    }
+
+    /**
+     * Находит кандидатов для пути запроса вместе с ключом совпадения
+     */
+    public Match match(String path) {
+        List<String> requestSegments = segments(path);
+        List<List<Node>> byDepth = new ArrayList<>();
+        collect(root, requestSegments, 0, byDepth);
+
+        List<String> candidates = new ArrayList<>();
+        StringJoiner key = new StringJoiner(",");
+        for (int depth = byDepth.size() - 1; depth >= 0; depth--) {
+            for (Node node : byDepth.get(depth)) {
+                key.add(node.template.isEmpty() ? "/" : node.template);
+                for (String className : node.controllers) {
+                    if (!candidates.contains(className)) {
+                        candidates.add(className);
+                    }
+                }
+            }
+        }
+        return new Match(candidates, key.toString());
+    }
+
+    /**
+     * Проверяет, начинается ли с сегмента базовый путь хотя бы одного контроллера
+     */
+    public boolean hasTopSegment(String segment) {
+        return root.children.containsKey(segment);
+    }
+
+    /**
+     * Количество контроллеров в индексе
+     */
+    public int size() {
+        return classNames.size();
+    }
+
+    private void collect(Node node, List<String> requestSegments, int depth, List<List<Node>> byDepth) {
+        if (!node.controllers.isEmpty()) {
+            while (byDepth.size() <= depth) {
+                byDepth.add(new ArrayList<>());
+            }
+            byDepth.get(depth).add(node);
+        }
+        if (depth == requestSegments.size()) {
+            return;
+        }
+        // Точное совпадение сегмента предпочтительнее шаблона на той же глубине
+        Node literal = node.children.get(requestSegments.get(depth));
+        if (literal != null) {
+            collect(literal, requestSegments, depth + 1, byDepth);
+        }
+        Node wildcard = node.children.get(WILDCARD);
+        if (wildcard != null) {
+            collect(wildcard, requestSegments, depth + 1, byDepth);
+        }
+    }
+
+    private static boolean isPattern(String segment) {
+        return segment.contains("{") || segment.contains("*") || segment.contains("?");
+    }
+
+    private static List<String> segments(String path) {
+        List<String> result = new ArrayList<>();
+        if (path == null) {
+            return result;
+        }
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                result.add(segment);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Результат поиска: кандидаты и ключ совпадения
+     */
+    public static class Match {
+        private final List<String> candidates;
+        private final String key;
+
+        public Match(List<String> candidates, String key) {
+            this.candidates = candidates;
+            this.key = key;
+        }
+
+        public List<String> getCandidates() {
+            return candidates;
+        }
+
+        /**
+         * Шаблоны совпавших базовых путей через запятую; пустая строка, если кандидатов нет
+         */
+        public String getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * Узел дерева: один сегмент базового пути
+     */
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final List<String> controllers = new ArrayList<>(1);
+        // Базовый путь до узла, переменные заменены на *
+        private final String template;
+
+        private Node(String template) {
+            this.template = template;
+        }
+    }
+}
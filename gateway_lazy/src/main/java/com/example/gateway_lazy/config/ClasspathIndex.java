@@ -0,0 +1,507 @@
+package com.example.gateway_lazy.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ResourceUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * Общий индекс контроллеров в classpath.
+ * Единственное место, где выполняется обход classpath: LazyEndpointScanner получает
+ * список контроллеров отсюда и не сканирует classpath заново при каждом промахе.
+ *
+ * Результаты кэшируются по корню сканирования (пакет или весь classpath) и живут
+ * до явной инвалидации через invalidate().
+ *
+ * При сканировании всего classpath пакеты фильтруются через PackageFilter до чтения
+ * class-файлов: jar-файлы отбрасываются по манифесту или списку пакетов,
+ * директории исключенных пакетов не обходятся.
+ */
+@Component
+public class ClasspathIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ClasspathIndex.class);
+
+    private static final String ALL_CLASSPATH = "*";
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+    private final CachingMetadataReaderFactory metadataReaderFactory = new CachingMetadataReaderFactory(resolver);
+    private final PackageFilter packageFilter;
+
+    // Кэш: корень сканирования (имя пакета или "*" для всего classpath) -> найденные контроллеры
+    private final Map<String, List<ControllerEntry>> index = new ConcurrentHashMap<>();
+
+    private volatile ScanStatistics lastScanStatistics = new ScanStatistics(0, 0, 0, 0, 0, 0, 0);
+
+    // Поколение индекса: увеличивается при каждой инвалидации
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Индекс с фильтром пакетов по умолчанию (для использования вне Spring)
+     */
+    public ClasspathIndex() {
+        this("", PackageFilter.DEFAULT_EXCLUDES);
+    }
+
+    @Autowired
+    public ClasspathIndex(@Value("${endpoint-scanner.include-packages:}") String includePackages,
+                          @Value("${endpoint-scanner.exclude-packages:" + PackageFilter.DEFAULT_EXCLUDES + "}") String excludePackages) {
+        this.packageFilter = PackageFilter.of(includePackages, excludePackages);
+    }
+
+    /**
+     * Возвращает контроллеры из указанного пакета (и его подпакетов)
+     */
+    public List<ControllerEntry> findControllers(String packageName) {
+        String root = packageName.trim();
+        return index.computeIfAbsent(root, this::scanPackage);
+    }
+
+    /**
+     * Возвращает контроллеры из нескольких пакетов, заданных через запятую
+     */
+    public List<ControllerEntry> findControllersInPackages(String packages) {
+        Map<String, ControllerEntry> result = new LinkedHashMap<>();
+        for (String packageName : packages.split(",")) {
+            if (packageName.isBlank()) {
+                continue;
+            }
+            for (ControllerEntry entry : findControllers(packageName)) {
+                result.putIfAbsent(entry.getClassName(), entry);
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Возвращает контроллеры из всего classpath
+     */
+    public List<ControllerEntry> findAllControllers() {
+        return index.computeIfAbsent(ALL_CLASSPATH, root -> scanAllClasspath());
+    }
+
+    /**
+     * Возвращает статистику последнего сканирования всего classpath
+     */
+    public ScanStatistics getLastScanStatistics() {
+        return lastScanStatistics;
+    }
+
+    /**
+     * Поколение индекса. Если оно изменилось, построенные по индексу структуры устарели
+     * и должны быть построены заново.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Сбрасывает весь индекс. Следующий запрос заново прочитает classpath.
+     */
+    public void invalidate() {
+        index.clear();
+        metadataReaderFactory.clearCache();
+        generation.incrementAndGet();
+        log.debug("Classpath index invalidated");
+    }
+
+    /**
+     * Сбрасывает индекс для одного пакета
+     */
+    public void invalidate(String packageName) {
+        index.remove(packageName.trim());
+        // Полное сканирование classpath тоже могло содержать классы этого пакета
+        index.remove(ALL_CLASSPATH);
+        metadataReaderFactory.clearCache();
+        generation.incrementAndGet();
+        log.debug("Classpath index invalidated for package {}", packageName);
+    }
+
+    private List<ControllerEntry> scanPackage(String packageName) {
+        String pattern = "classpath*:" + packageName.replace('.', '/') + "/**/*.class";
+        log.debug("Indexing controllers by pattern: {}", pattern);
+
+        try {
+            Map<String, ControllerEntry> controllers = new LinkedHashMap<>();
+            ScanCounters counters = new ScanCounters();
+            for (Resource resource : resolver.getResources(pattern)) {
+                readController(resource, controllers, counters);
+            }
+            log.debug("Indexed {} controllers in package {}", controllers.size(), packageName);
+            return List.copyOf(controllers.values());
+        } catch (Exception e) {
+            log.warn("Error indexing package {}: {}", packageName, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private List<ControllerEntry> scanAllClasspath() {
+        log.info("Indexing all controllers in classpath...");
+        long start = System.currentTimeMillis();
+        Map<String, ControllerEntry> controllers = new LinkedHashMap<>();
+        ScanCounters counters = new ScanCounters();
+
+        try {
+            // Корни classpath: директории классов и jar-файлы
+            for (Resource root : resolver.getResources("classpath*:")) {
+                try {
+                    scanRoot(root, controllers, counters);
+                } catch (Exception e) {
+                    log.debug("Error indexing classpath root {}: {}", root, e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error indexing all controllers in classpath", e);
+        }
+
+        ScanStatistics statistics = counters.toStatistics(controllers.size(), System.currentTimeMillis() - start);
+        lastScanStatistics = statistics;
+        log.info("Indexed {} controllers in classpath: {}", controllers.size(), statistics);
+        return List.copyOf(controllers.values());
+    }
+
+    private void scanRoot(Resource root, Map<String, ControllerEntry> controllers, ScanCounters counters) throws IOException {
+        URL url = root.getURL();
+        if (ResourceUtils.isFileURL(url)) {
+            File file = root.getFile();
+            if (file.isDirectory()) {
+                scanDirectoryRoot(file.toPath(), controllers, counters);
+            } else if (file.getName().endsWith(".jar")) {
+                scanJarRoot(new URL(ResourceUtils.JAR_URL_PREFIX + url + ResourceUtils.JAR_URL_SEPARATOR),
+                        controllers, counters);
+            } else {
+                counters.rootsSkipped++;
+            }
+        } else if (ResourceUtils.isJarURL(url)) {
+            scanJarRoot(url, controllers, counters);
+        } else {
+            counters.rootsSkipped++;
+        }
+    }
+
+    /**
+     * Сканирует директорию классов, не заходя в поддиректории исключенных пакетов
+     */
+    private void scanDirectoryRoot(Path rootPath, Map<String, ControllerEntry> controllers, ScanCounters counters) throws IOException {
+        int classesBefore = counters.classesRead;
+        Files.walkFileTree(rootPath, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(rootPath) && packageFilter.canSkipSubtree(toPackageName(rootPath.relativize(dir)))) {
+                    counters.directoriesPruned++;
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String relative = rootPath.relativize(file).toString().replace(File.separatorChar, '/');
+                if (isCandidateClassEntry(relative, counters)) {
+                    readController(new FileSystemResource(file), controllers, counters);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        countRoot(counters, classesBefore);
+    }
+
+    /**
+     * Сканирует jar-файл. Jar отбрасывается целиком, если имя модуля из манифеста исключено,
+     * иначе по списку пакетов из центрального каталога (без распаковки class-файлов).
+     */
+    private void scanJarRoot(URL rootUrl, Map<String, ControllerEntry> controllers, ScanCounters counters) throws IOException {
+        URLConnection connection = rootUrl.openConnection();
+        if (!(connection instanceof JarURLConnection jarConnection)) {
+            counters.rootsSkipped++;
+            return;
+        }
+        ResourceUtils.useCachesIfNecessary(jarConnection);
+        JarFile jarFile = jarConnection.getJarFile();
+        try {
+            String moduleName = findModuleName(jarFile.getManifest());
+            // Имя модуля не обязано совпадать с пакетами jar, поэтому jar отбрасывается
+            // только по явному exclude, а не из-за несовпадения с include
+            if (moduleName != null && packageFilter.isExcludedSubtree(moduleName)) {
+                counters.rootsSkipped++;
+                log.trace("Skipping jar {} (module {})", jarFile.getName(), moduleName);
+                return;
+            }
+
+            JarEntry rootEntry = jarConnection.getJarEntry();
+            String rootPath = rootEntry != null ? rootEntry.getName() : "";
+            if (!rootPath.isEmpty() && !rootPath.endsWith("/")) {
+                rootPath += "/";
+            }
+
+            int classesBefore = counters.classesRead;
+            for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
+                String entryName = entries.nextElement().getName();
+                if (!entryName.startsWith(rootPath)) {
+                    continue;
+                }
+                String relative = entryName.substring(rootPath.length());
+                if (isCandidateClassEntry(relative, counters)) {
+                    readController(new UrlResource(new URL(rootUrl, relative)),
+                            controllers, counters);
+                }
+            }
+            countRoot(counters, classesBefore);
+        } finally {
+            if (!jarConnection.getUseCaches()) {
+                jarFile.close();
+            }
+        }
+    }
+
+    /**
+     * Проверяет по имени записи, стоит ли читать class-файл
+     */
+    private boolean isCandidateClassEntry(String relativePath, ScanCounters counters) {
+        if (!relativePath.endsWith(CLASS_SUFFIX)) {
+            return false;
+        }
+        int lastSlash = relativePath.lastIndexOf('/');
+        String packagePath = lastSlash > 0 ? relativePath.substring(0, lastSlash) : "";
+        if (relativePath.startsWith("META-INF/") ||
+            relativePath.indexOf('$') >= 0 ||
+            relativePath.endsWith("module-info.class") ||
+            relativePath.endsWith("package-info.class") ||
+            !counters.packageDecisions.computeIfAbsent(packagePath, path -> packageFilter.accepts(path))) {
+            counters.entriesSkipped++;
+            return false;
+        }
+        return true;
+    }
+
+    private void readController(Resource resource, Map<String, ControllerEntry> controllers, ScanCounters counters) {
+        if (!resource.isReadable()) {
+            return;
+        }
+        counters.classesRead++;
+        try {
+            MetadataReader metadataReader = metadataReaderFactory.getMetadataReader(resource);
+            String className = metadataReader.getClassMetadata().getClassName();
+
+            if (packageFilter.accepts(className) &&
+                metadataReader.getAnnotationMetadata().hasAnnotation(RestController.class.getName())) {
+                controllers.putIfAbsent(className,
+                        new ControllerEntry(className, resource.getDescription(), resource.getURL().toString(),
+                                findBasePaths(metadataReader)));
+            }
+        } catch (Exception | LinkageError e) {
+            // Игнорируем нечитаемые ресурсы
+            log.trace("Skipping unreadable resource {}: {}", resource, e.getMessage());
+        }
+    }
+
+    /**
+     * Базовые пути контроллера из @RequestMapping на классе (по метаданным class-файла, без загрузки класса).
+     * Пустой список, если базового пути нет.
+     */
+    private static List<String> findBasePaths(MetadataReader metadataReader) {
+        Map<String, Object> attributes = metadataReader.getAnnotationMetadata()
+                .getAnnotationAttributes(RequestMapping.class.getName());
+        if (attributes == null) {
+            return List.of();
+        }
+        String[] paths = (String[]) attributes.get("path");
+        if (paths == null || paths.length == 0) {
+            paths = (String[]) attributes.get("value");
+        }
+        return paths != null ? List.of(paths) : List.of();
+    }
+
+    private static void countRoot(ScanCounters counters, int classesBefore) {
+        if (counters.classesRead > classesBefore) {
+            counters.rootsScanned++;
+        } else {
+            counters.rootsSkipped++;
+        }
+    }
+
+    private static String findModuleName(Manifest manifest) {
+        if (manifest == null) {
+            return null;
+        }
+        Attributes attributes = manifest.getMainAttributes();
+        String moduleName = attributes.getValue("Automatic-Module-Name");
+        if (moduleName == null) {
+            moduleName = attributes.getValue("Bundle-SymbolicName");
+        }
+        if (moduleName == null) {
+            return null;
+        }
+        int semicolon = moduleName.indexOf(';');
+        return (semicolon >= 0 ? moduleName.substring(0, semicolon) : moduleName).trim();
+    }
+
+    private static String toPackageName(Path relativeDir) {
+        return relativeDir.toString().replace(File.separatorChar, '.');
+    }
+
+    /**
+     * Счетчики одного прохода по classpath
+     */
+    private static class ScanCounters {
+        private final Map<String, Boolean> packageDecisions = new HashMap<>();
+        private int rootsScanned;
+        private int rootsSkipped;
+        private int directoriesPruned;
+        private int entriesSkipped;
+        private int classesRead;
+
+        private ScanStatistics toStatistics(int controllersFound, long durationMs) {
+            return new ScanStatistics(rootsScanned, rootsSkipped, directoriesPruned, entriesSkipped,
+                    classesRead, controllersFound, durationMs);
+        }
+    }
+
+    /**
+     * Статистика сканирования всего classpath
+     */
+    public static class ScanStatistics {
+        private final int rootsScanned;
+        private final int rootsSkipped;
+        private final int directoriesPruned;
+        private final int entriesSkipped;
+        private final int classesRead;
+        private final int controllersFound;
+        private final long durationMs;
+
+        public ScanStatistics(int rootsScanned, int rootsSkipped, int directoriesPruned, int entriesSkipped,
+                              int classesRead, int controllersFound, long durationMs) {
+            this.rootsScanned = rootsScanned;
+            this.rootsSkipped = rootsSkipped;
+            this.directoriesPruned = directoriesPruned;
+            this.entriesSkipped = entriesSkipped;
+            this.classesRead = classesRead;
+            this.controllersFound = controllersFound;
+            this.durationMs = durationMs;
+        }
+
+        public int getRootsScanned() {
+            return rootsScanned;
+        }
+
+        public int getRootsSkipped() {
+            return rootsSkipped;
+        }
+
+        public int getDirectoriesPruned() {
+            return directoriesPruned;
+        }
+
+        public int getEntriesSkipped() {
+            return entriesSkipped;
+        }
+
+        public int getClassesRead() {
+            return classesRead;
+        }
+
+        public int getControllersFound() {
+            return controllersFound;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        @Override
+        public String toString() {
+            return rootsScanned + " roots scanned, " + rootsSkipped + " roots skipped, " +
+                   directoriesPruned + " directories pruned, " + entriesSkipped + " entries skipped, " +
+                   classesRead + " classes read in " + durationMs + " ms";
+        }
+    }
+
+    /**
+     * Запись индекса: контроллер и место, откуда прочитан его class-файл
+     */
+    public static class ControllerEntry {
+        private final String className;
+        private final String resourceLocation;
+        private final String resourceUrl;
+        private final List<String> basePaths;
+
+        public ControllerEntry(String className, String resourceLocation, String resourceUrl) {
+            this(className, resourceLocation, resourceUrl, List.of());
+        }
+
+        public ControllerEntry(String className, String resourceLocation, String resourceUrl, List<String> basePaths) {
+            this.className = className;
+            this.resourceLocation = resourceLocation;
+            this.resourceUrl = resourceUrl;
+            this.basePaths = List.copyOf(basePaths);
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getResourceLocation() {
+            return resourceLocation;
+        }
+
+        public String getResourceUrl() {
+            return resourceUrl;
+        }
+
+        /**
+         * Первый базовый путь из @RequestMapping на классе или пустая строка
+         */
+        public String getBasePath() {
+            return basePaths.isEmpty() ? "" : basePaths.get(0);
+        }
+
+        /**
+         * Все базовые пути из @RequestMapping на классе; пустой список, если базового пути нет
+         */
+        public List<String> getBasePaths() {
+            return basePaths;
+        }
+
+        /**
+         * Загружает класс контроллера. Возвращает null, если класс недоступен.
+         */
+        public Class<?> loadClass() {
+            try {
+                return Class.forName(className);
+            } catch (ClassNotFoundException | LinkageError e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return className + " (" + resourceLocation + ")";
+        }
+    }
+}
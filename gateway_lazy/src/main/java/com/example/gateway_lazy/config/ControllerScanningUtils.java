@@ -9,6 +9,7 @@ import reactor.core.publisher.Mono;
 import org.springframework.security.authorization.AuthorizationDecision;
 
 import java.lang.reflect.Method;
+import java.util.List;
 import java.util.function.BiFunction;
 
 /**
@@ -64,6 +65,17 @@ public class ControllerScanningUtils {
             : "";
     }
 
+    /**
+     * Находит все базовые пути контроллера из аннотации @RequestMapping класса.
+     * Если базового пути нет, возвращает список из пустой строки.
+     */
+    public static List<String> findBasePaths(Class<?> controllerClass) {
+        RequestMapping classMapping = AnnotationUtils.findAnnotation(controllerClass, RequestMapping.class);
+        return classMapping != null && classMapping.value().length > 0
+            ? List.of(classMapping.value())
+            : List.of("");
+    }
+
     /**
      * Интерфейс для получения метода авторизации
      */
@@ -1,31 +1,48 @@
 package com.example.gateway_lazy.config;
 
-import com.example.gateway_lazy.config.ControllerScanningUtils;
 import com.example.gateway_lazy.security.CustomAuthorizationManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
-import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
-import org.springframework.core.type.classreading.MetadataReader;
-import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.server.authorization.AuthorizationContext;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import org.springframework.security.authorization.AuthorizationDecision;
 
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiFunction;
 
 /**
  * Ленивый сканер эндпоинтов - сканирует конкретный эндпоинт при первом обращении к нему,
  * а не все эндпоинты при старте приложения.
+ *
+ * Контроллер для пути находится через индекс базовых путей (BasePathIndex), который строится
+ * один раз по метаданным class-файлов. При промахе интроспектируется только контроллер
+ * с подходящим базовым путем, а не все контроллеры.
+ *
+ * Сканирование каждого контроллера выполняется ровно один раз: если несколько запросов
+ * одновременно промахнулись по одному контроллеру (например, сразу после деплоя), сканирует
+ * первый из них, а остальные ждут его результата не дольше endpoint-scanner.lazy.scan-timeout-ms.
+ *
+ * Сканирование доступно как Mono (scanEndpoint): обход classpath и загрузка классов выполняются
+ * на отдельном ограниченном планировщике и никогда не блокируют потоки event loop Netty. Ожидание
+ * чужого сканирования не занимает поток вовсе: запрос подписывается на результат сканирования.
+ *
+ * Ошибка сканирования (например, переполненный планировщик отклонил задачу) передается вызывающему
+ * как ошибка Mono и не попадает в кэш отрицательных результатов: отсутствие правила означает только
+ * то, что подходящий контроллер отсканирован и правила для пути в нем нет.
  */
 @Component
 public class LazyEndpointScanner {
@@ -34,12 +51,45 @@ public class LazyEndpointScanner {
 
     private final EndpointAuthorizationRegistry endpointRegistry;
     private final CustomAuthorizationManager authorizationManager;
+    private final ClasspathIndex classpathIndex;
+    private final StartupTimeline startupTimeline;
     
-    // Кэш отсканированных контроллеров (путь -> класс контроллера)
-    private final Map<String, Class<?>> scannedControllers = new ConcurrentHashMap<>();
+    // Сканирования контроллеров по имени класса: завершенные (правила зарегистрированы) и выполняющиеся.
+    // Не больше, чем контроллеров в индексе
+    private final ConcurrentMap<String, CompletableFuture<Boolean>> controllerScans = new ConcurrentHashMap<>();
     
-    // Кэш проверенных путей (чтобы не сканировать повторно)
-    private final Set<String> scannedPaths = ConcurrentHashMap.newKeySet();
+    // Кэш отрицательных результатов: метод + ключ совпадения в BasePathIndex (шаблоны базовых путей,
+    // а не конкретный путь). Ограничен по размеру и времени жизни, поэтому не растет от
+    // количества различных URL
+    private BoundedTtlCache<String, Boolean> scannedPaths;
+    
+    // Количество запросов по первому сегменту пути - для порядка фонового прогрева
+    private final ConcurrentMap<String, LongAdder> prefixTraffic = new ConcurrentHashMap<>();
+    
+    // Контроллеры, отсканированные из-за запроса к ним (а не фоновым прогревом)
+    private final Set<String> requestedControllers = ConcurrentHashMap.newKeySet();
+    
+    // Шаблоны (метод и ключ совпадения в BasePathIndex), для которых сканирование по запросу нашло правило.
+    // Не больше, чем комбинаций методов и базовых путей контроллеров
+    private final Set<String> hotTemplates = ConcurrentHashMap.newKeySet();
+    
+    @Value("${endpoint-scanner.lazy.negative-cache.max-size:10000}")
+    private int negativeCacheMaxSize;
+    
+    @Value("${endpoint-scanner.lazy.negative-cache.ttl-ms:60000}")
+    private long negativeCacheTtlMs;
+    
+    @Value("${endpoint-scanner.lazy.scan-timeout-ms:5000}")
+    private long scanTimeoutMs;
+    
+    // Потоки планировщика сканирования; 0 - по количеству процессоров
+    @Value("${endpoint-scanner.lazy.scheduler.threads:0}")
+    private int schedulerThreads;
+    
+    @Value("${endpoint-scanner.lazy.scheduler.queue-size:1000}")
+    private int schedulerQueueSize;
+    
+    private Scheduler scanScheduler;
     
     @Value("${endpoint-scanner.scan-packages:com.example.moduleA.controller,com.example.moduleB.controller}")
     private String scanPackages;
@@ -47,112 +97,381 @@ public class LazyEndpointScanner {
     @Value("${endpoint-scanner.lazy.auto-scan-all:false}")
     private boolean autoScanAll;
 
+    // Индекс базовых путей контроллеров; строится при первом промахе и перестраивается,
+    // когда меняется поколение индекса classpath
+    private volatile BasePathIndex basePathIndex;
+    private volatile long basePathIndexGeneration = -1;
+    private volatile Map<String, ClasspathIndex.ControllerEntry> controllerEntries = Collections.emptyMap();
+    // Построение индекса на планировщике, общее для всех запросов, пришедших до его завершения
+    private final AtomicReference<CompletableFuture<BasePathIndex>> basePathIndexBuild = new AtomicReference<>();
+
     public LazyEndpointScanner(EndpointAuthorizationRegistry endpointRegistry,
-                               CustomAuthorizationManager authorizationManager) {
+                               CustomAuthorizationManager authorizationManager,
+                               ClasspathIndex classpathIndex,
+                               StartupTimeline startupTimeline) {
         this.endpointRegistry = endpointRegistry;
         this.authorizationManager = authorizationManager;
+        this.classpathIndex = classpathIndex;
+        this.startupTimeline = startupTimeline;
+    }
+
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        scannedPaths = new BoundedTtlCache<>(negativeCacheMaxSize, negativeCacheTtlMs);
+        int threads = schedulerThreads > 0 ? schedulerThreads : Runtime.getRuntime().availableProcessors();
+        scanScheduler = Schedulers.newBoundedElastic(threads, schedulerQueueSize, "lazy-scan");
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        scanScheduler.dispose();
     }
 
     /**
-     * Сканирует конкретный эндпоинт при обращении к нему.
-     * Если эндпоинт уже отсканирован, возвращает true без повторного сканирования.
-     * 
-     * @param httpMethod HTTP метод (GET, POST, etc.)
-     * @param path путь эндпоинта
-     * @return true если эндпоинт найден и зарегистрирован
+     * Сканирует эндпоинт при обращении к нему. Сканирование выполняется на планировщике lazy-scan;
+     * если шаблон пути уже известен как отрицательный, результат возвращается сразу, без смены потока.
+     *
+     * @return Mono с true, если эндпоинт найден и зарегистрирован, и false, если подходящего правила нет;
+     *         ошибка, если сканирование контроллера-кандидата не удалось
      */
-    public boolean scanEndpointOnDemand(String httpMethod, String path) {
-        String endpointKey = httpMethod + ":" + path;
-        
-        // Проверяем, не сканировали ли мы уже этот путь
-        if (scannedPaths.contains(endpointKey)) {
-            log.debug("Endpoint {} already scanned, skipping", endpointKey);
-            return endpointRegistry.findAuthorizationMethod(httpMethod, path) != null;
+    public Mono<Boolean> scanEndpoint(String httpMethod, String path) {
+        BasePathIndex index = currentBasePathIndex();
+        if (index != null) {
+            BasePathIndex.Match match = index.match(path);
+            if (scannedPaths.get(httpMethod + ":" + match.getKey()) != null) {
+                return Mono.just(false);
+            }
+            return scanCandidates(httpMethod, path, match);
+        }
+        return basePathIndexMono().flatMap(built -> scanCandidates(httpMethod, path, built.match(path)));
+    }
+
+    /**
+     * Проверяет кандидатов по очереди до первого, после сканирования которого нашлось правило.
+     * Кандидат, сканирование которого не удалось или не завершилось вовремя, не прерывает проверку
+     * остальных; если правило так и не нашлось, ошибка передается вызывающему, а отрицательный
+     * результат не запоминается.
+     */
+    private Mono<Boolean> scanCandidates(String httpMethod, String path, BasePathIndex.Match match) {
+        String endpointKey = httpMethod + ":" + match.getKey();
+        if (scannedPaths.get(endpointKey) != null) {
+            return Mono.just(endpointRegistry.findAuthorizationMethod(httpMethod, path) != null);
         }
-        
         log.debug("Lazy scanning endpoint: {} {}", httpMethod, path);
-        
-        // Пытаемся найти контроллер, содержащий этот эндпоинт
-        Class<?> controllerClass = findControllerForPath(path);
-        
-        if (controllerClass != null) {
-            // Сканируем только этот контроллер
+        String trigger = "endpoint " + httpMethod + " " + path;
+        long start = System.currentTimeMillis();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        return Flux.fromIterable(match.getCandidates())
+                .concatMap(className -> controllerScan(className, trigger, start)
+                        .doOnNext(scanned -> {
+                            if (scanned) {
+                                requestedControllers.add(className);
+                            }
+                        })
+                        .onErrorResume(e -> {
+                            failure.compareAndSet(null, e);
+                            return Mono.just(false);
+                        })
+                        .map(scanned -> scanned && endpointRegistry.findAuthorizationMethod(httpMethod, path) != null))
+                .any(found -> found)
+                .flatMap(found -> {
+                    if (found) {
+                        hotTemplates.add(httpMethod + " " + match.getKey());
+                        return Mono.just(true);
+                    }
+                    Throwable error = failure.get();
+                    if (error != null) {
+                        return Mono.error(error);
+                    }
+                    scannedPaths.put(endpointKey, Boolean.TRUE);
+                    log.debug("No controller found for endpoint {} {}", httpMethod, path);
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Сканирует контроллер или ждет его сканирования, уже начатого другим запросом. Сканирование
+     * запускается на планировщике lazy-scan и не отменяется вместе с запросом; ожидание результата
+     * (своего или чужого сканирования) не занимает поток и ограничено endpoint-scanner.lazy.scan-timeout-ms.
+     *
+     * @return Mono с true, если правила контроллера зарегистрированы, и false, если класс недоступен;
+     *         ошибка, если сканирование не удалось, задачу отклонил планировщик или сканирование
+     *         не завершилось вовремя (TimeoutException) - правила контроллера еще неизвестны
+     */
+    private Mono<Boolean> controllerScan(String className, String trigger, long start) {
+        return Mono.defer(() -> {
+            CompletableFuture<Boolean> scan = new CompletableFuture<>();
+            CompletableFuture<Boolean> existing = controllerScans.putIfAbsent(className, scan);
+            if (existing == null) {
+                existing = scan;
+                Mono.fromCallable(() -> runControllerScan(className, scan, trigger, start))
+                        .subscribeOn(scanScheduler)
+                        .subscribe(null, e -> {
+                            // Задачу мог не принять переполненный планировщик - освобождаем место для повтора
+                            controllerScans.remove(className, scan);
+                            scan.completeExceptionally(e);
+                        });
+            } else if (!existing.isDone()) {
+                log.debug("Controller {} is being scanned by another request, waiting", className);
+            }
+            // Отмена ожидания не должна отменять общее сканирование
+            return Mono.fromFuture(existing, true)
+                    .timeout(Duration.ofMillis(scanTimeoutMs))
+                    .doOnError(e -> {
+                        if (e instanceof TimeoutException) {
+                            log.warn("Timed out after {} ms waiting for lazy scan of {} for {}",
+                                    scanTimeoutMs, className, trigger);
+                        } else {
+                            log.warn("Lazy scan of {} for {} failed: {}", className, trigger, e.toString());
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Сканирует контроллер, для которого этот вызов занял место в controllerScans, и завершает scan
+     */
+    private Boolean runControllerScan(String className, CompletableFuture<Boolean> scan, String trigger, long start) {
+        try {
+            ClasspathIndex.ControllerEntry entry = controllerEntries.get(className);
+            Class<?> controllerClass = entry != null ? entry.loadClass() : null;
+            if (controllerClass == null) {
+                // Класс недоступен (например, модуль еще не загружен) - повторим после истечения
+                // отрицательного результата
+                controllerScans.remove(className, scan);
+                scan.complete(false);
+                return false;
+            }
+            
             int registered = scanController(controllerClass);
-            scannedPaths.add(endpointKey);
-            log.info("Lazy scanned controller {} for endpoint {} {}, registered {} rules", 
-                    controllerClass.getSimpleName(), httpMethod, path, registered);
-            return endpointRegistry.findAuthorizationMethod(httpMethod, path) != null;
+            if (start >= 0) {
+                startupTimeline.recordPhase(StartupTimeline.FIRST_LAZY_SCAN, System.currentTimeMillis() - start);
+            }
+            log.info("Lazy scanned controller {} for {}, registered {} rules", 
+                    controllerClass.getSimpleName(), trigger, registered);
+            scan.complete(true);
+            return true;
+        } catch (RuntimeException | Error e) {
+            controllerScans.remove(className, scan);
+            scan.completeExceptionally(e);
+            throw e;
         }
-        
-        // Если не нашли контроллер, помечаем путь как проверенный
-        scannedPaths.add(endpointKey);
-        log.debug("No controller found for endpoint {} {}", httpMethod, path);
-        return false;
     }
 
     /**
-     * Находит контроллер, который может содержать указанный путь
+     * Учитывает запрос в статистике трафика по первому сегменту пути.
+     * Считаются только сегменты, с которых начинается базовый путь хотя бы одного контроллера,
+     * поэтому количество счетчиков не растет от количества различных URL.
      */
-    private Class<?> findControllerForPath(String path) {
-        // Сначала проверяем кэш
-        Class<?> cached = scannedControllers.get(path);
-        if (cached != null) {
-            return cached;
+    public void recordRequest(String path) {
+        BasePathIndex index = basePathIndex;
+        if (index == null) {
+            return;
         }
-        
-        try {
-            Set<Class<?>> controllers;
-            
-            if (autoScanAll) {
-                // Сканируем весь classpath
-                controllers = scanAllControllersInClasspath();
-            } else {
-                // Сканируем только указанные пакеты
-                controllers = scanControllersInPackages();
+        String segment = firstSegment(path);
+        if (segment.isEmpty() || !index.hasTopSegment(segment)) {
+            return;
+        }
+        prefixTraffic.computeIfAbsent(segment, s -> new LongAdder()).increment();
+    }
+
+    /**
+     * Количество запросов с тем же первым сегментом пути, что и у базового пути контроллера
+     */
+    public long getPrefixTraffic(ClasspathIndex.ControllerEntry entry) {
+        Set<String> segments = new HashSet<>();
+        for (String basePath : entry.getBasePaths()) {
+            segments.add(firstSegment(basePath));
+        }
+        if (segments.isEmpty()) {
+            segments.add("");
+        }
+        long traffic = 0;
+        for (String segment : segments) {
+            LongAdder counter = prefixTraffic.get(segment);
+            traffic += counter != null ? counter.sum() : 0;
+        }
+        return traffic;
+    }
+
+    /**
+     * Возвращает контроллеры, которые еще не сканировались. При необходимости строит индекс базовых путей.
+     */
+    public List<ClasspathIndex.ControllerEntry> findUnscannedControllers() {
+        getBasePathIndex();
+        List<ClasspathIndex.ControllerEntry> unscanned = new ArrayList<>();
+        for (ClasspathIndex.ControllerEntry entry : controllerEntries.values()) {
+            if (!controllerScans.containsKey(entry.getClassName())) {
+                unscanned.add(entry);
             }
-            
-            // Ищем контроллер, который может содержать этот путь
-            for (Class<?> controllerClass : controllers) {
-                if (controllerMatchesPath(controllerClass, path)) {
-                    scannedControllers.put(path, controllerClass);
-                    return controllerClass;
-                }
+        }
+        return unscanned;
+    }
+
+    /**
+     * Проверяет, отсканирован ли контроллер или сканируется ли он сейчас
+     */
+    public boolean isControllerScanned(String className) {
+        return controllerScans.containsKey(className);
+    }
+
+    /**
+     * Сканирует контроллер заранее, до первого запроса к нему (фоновый прогрев)
+     *
+     * @return true, если правила контроллера зарегистрированы этим вызовом; false, если контроллер
+     *         уже отсканирован или сканируется по запросу, или класс недоступен
+     */
+    public boolean prewarmController(String className) {
+        getBasePathIndex();
+        CompletableFuture<Boolean> scan = new CompletableFuture<>();
+        if (controllerScans.putIfAbsent(className, scan) != null) {
+            return false;
+        }
+        return runControllerScan(className, scan, "background prewarm", -1);
+    }
+
+    /**
+     * Сканирует контроллер из сохраненного горячего набора на планировщике сканирования
+     *
+     * @return Mono с true, если правила контроллера зарегистрированы; false, если сканирование
+     *         не удалось - контроллер отсканируется лениво
+     */
+    public Mono<Boolean> preloadController(String className) {
+        return basePathIndexMono().then(controllerScan(className, "hot set preload", -1))
+                .onErrorReturn(false);
+    }
+
+    /**
+     * Сканирует заранее контроллеры, подходящие к сохраненному шаблону из горячего набора.
+     * В отличие от имени класса, шаблон переживает переименование и перенос контроллера.
+     *
+     * @param template метод и ключ совпадения в BasePathIndex через пробел (см. findHotTemplates)
+     * @return Mono с true, если правила хотя бы одного контроллера-кандидата зарегистрированы
+     */
+    public Mono<Boolean> preloadTemplate(String template) {
+        int space = template.indexOf(' ');
+        if (space < 0) {
+            return Mono.just(false);
+        }
+        // Первый шаблон в ключе - самый длинный совпавший базовый путь, его кандидаты включают остальные
+        String basePath = template.substring(space + 1).split(",", 2)[0];
+        return basePathIndexMono()
+                .flatMapMany(index -> Flux.fromIterable(index.match(basePath).getCandidates()))
+                .concatMap(className -> controllerScan(className, "hot set preload", -1).onErrorReturn(false))
+                .reduce(false, (scanned, next) -> scanned || next)
+                .onErrorReturn(false);
+    }
+
+    /**
+     * Шаблоны путей, для которых сканирование по запросу нашло правило: метод и ключ совпадения
+     * в BasePathIndex через пробел, например "GET /api/items"
+     */
+    public Set<String> findHotTemplates() {
+        return new TreeSet<>(hotTemplates);
+    }
+
+    /**
+     * Горячий набор - контроллеры, которые использовались с момента старта: отсканированные
+     * из-за запроса к ним и отсканированные заранее, в префиксы которых затем были запросы
+     */
+    public Set<String> findHotControllers() {
+        Set<String> hot = new TreeSet<>(requestedControllers);
+        for (ClasspathIndex.ControllerEntry entry : controllerEntries.values()) {
+            CompletableFuture<Boolean> scan = controllerScans.get(entry.getClassName());
+            if (scan != null && scan.getNow(false) && getPrefixTraffic(entry) > 0) {
+                hot.add(entry.getClassName());
             }
-        } catch (Exception e) {
-            log.error("Error finding controller for path: {}", path, e);
         }
-        
-        return null;
+        return hot;
+    }
+
+    private static String firstSegment(String path) {
+        if (path == null) {
+            return "";
+        }
+        int from = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', from);
+        return end < 0 ? path.substring(from) : path.substring(from, end);
     }
 
     /**
-     * Проверяет, соответствует ли контроллер указанному пути
+     * Неблокирующий доступ к индексу базовых путей. Если индекс еще не построен, он строится
+     * одной задачей на планировщике lazy-scan, а все запросы ждут ее результата
      */
-    private boolean controllerMatchesPath(Class<?> controllerClass, String path) {
-        String basePath = ControllerScanningUtils.findBasePath(controllerClass);
-        
-        // Проверяем методы контроллера
-        for (Method method : controllerClass.getDeclaredMethods()) {
-            String httpMethod = ControllerScanningUtils.findHttpMethod(method);
-            if (httpMethod == null) continue;
-            
-            String methodPath = ControllerScanningUtils.findMethodPath(method);
-            String fullPath = basePath + methodPath;
-            
-            // Простая проверка совпадения (можно улучшить для path variables)
-            if (path.equals(fullPath) || path.startsWith(fullPath + "/")) {
-                return true;
+    private Mono<BasePathIndex> basePathIndexMono() {
+        BasePathIndex index = currentBasePathIndex();
+        if (index != null) {
+            return Mono.just(index);
+        }
+        return Mono.defer(() -> {
+            CompletableFuture<BasePathIndex> build = new CompletableFuture<>();
+            CompletableFuture<BasePathIndex> existing = basePathIndexBuild.compareAndExchange(null, build);
+            if (existing != null) {
+                return Mono.fromFuture(existing, true);
+            }
+            Mono.fromCallable(this::getBasePathIndex)
+                    .subscribeOn(scanScheduler)
+                    .subscribe(built -> {
+                        // Построенный индекс берется из поля; при смене поколения нужно новое построение
+                        basePathIndexBuild.compareAndSet(build, null);
+                        build.complete(built);
+                    }, e -> {
+                        // Следующий запрос попробует построить индекс заново
+                        basePathIndexBuild.compareAndSet(build, null);
+                        build.completeExceptionally(e);
+                    });
+            return Mono.fromFuture(build, true);
+        });
+    }
+
+    /**
+     * Индекс базовых путей, если он построен по текущему поколению индекса classpath, иначе null
+     */
+    private BasePathIndex currentBasePathIndex() {
+        BasePathIndex index = basePathIndex;
+        return index != null && basePathIndexGeneration == classpathIndex.getGeneration() ? index : null;
+    }
+
+    /**
+     * Возвращает индекс базовых путей. Строит его по метаданным class-файлов при первом вызове
+     * и после инвалидации индекса classpath: контроллеры, появившиеся позже, тоже становятся кандидатами.
+     */
+    private BasePathIndex getBasePathIndex() {
+        BasePathIndex index = currentBasePathIndex();
+        if (index == null) {
+            synchronized (this) {
+                index = currentBasePathIndex();
+                if (index == null) {
+                    boolean rebuild = basePathIndex != null;
+                    long generation = classpathIndex.getGeneration();
+                    List<ClasspathIndex.ControllerEntry> entries = findControllerEntries();
+                    Map<String, ClasspathIndex.ControllerEntry> byClassName = new HashMap<>();
+                    for (ClasspathIndex.ControllerEntry entry : entries) {
+                        byClassName.put(entry.getClassName(), entry);
+                    }
+                    controllerEntries = byClassName;
+                    index = BasePathIndex.build(entries);
+                    basePathIndex = index;
+                    basePathIndexGeneration = generation;
+                    if (rebuild) {
+                        // Отрицательные результаты получены по старому набору кандидатов
+                        scannedPaths.clear();
+                        log.info("Rebuilt base path index for {} controllers", index.size());
+                    } else {
+                        log.info("Built base path index for {} controllers", index.size());
+                    }
+                }
             }
         }
-        
-        return false;
+        return index;
     }
 
     /**
      * Сканирует контроллер и регистрирует его эндпоинты
      */
     private int scanController(Class<?> controllerClass) {
-        String basePath = ControllerScanningUtils.findBasePath(controllerClass);
+        List<String> basePaths = ControllerScanningUtils.findBasePaths(controllerClass);
         int rulesCount = 0;
         
         for (Method method : controllerClass.getDeclaredMethods()) {
@@ -160,13 +479,14 @@ public class LazyEndpointScanner {
             if (httpMethod == null) continue;
 
             String methodPath = ControllerScanningUtils.findMethodPath(method);
-            String fullPath = basePath + methodPath;
 
             BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> authorizationMethod = 
                 ControllerScanningUtils.findAuthorizationMethod(method, this::getAuthorizationMethod);
-            
-            if (authorizationMethod != null) {
-                String key = httpMethod + ":" + fullPath;
+            if (authorizationMethod == null) continue;
+
+            // Правило регистрируется под каждым базовым путем контроллера
+            for (String basePath : basePaths) {
+                String key = httpMethod + ":" + basePath + methodPath;
                 endpointRegistry.register(key, authorizationMethod);
                 rulesCount++;
                 log.debug("Lazy registered authorization rule: {} -> {}", key, authorizationMethod);
@@ -193,98 +513,12 @@ public class LazyEndpointScanner {
     }
 
     /**
-     * Сканирует контроллеры в указанных пакетах
-     */
-    private Set<Class<?>> scanControllersInPackages() {
-        Set<Class<?>> controllers = new HashSet<>();
-        
-        try {
-            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-            MetadataReaderFactory metadataReaderFactory = new CachingMetadataReaderFactory(resolver);
-            
-            String[] packageArray = scanPackages.split(",");
-            
-            for (String packageName : packageArray) {
-                packageName = packageName.trim();
-                String packagePath = packageName.replace('.', '/');
-                String pattern = "classpath*:" + packagePath + "/**/*.class";
-                
-                try {
-                    Resource[] resources = resolver.getResources(pattern);
-                    
-                    for (Resource resource : resources) {
-                        if (resource.isReadable()) {
-                            try {
-                                MetadataReader metadataReader = metadataReaderFactory.getMetadataReader(resource);
-                                String className = metadataReader.getClassMetadata().getClassName();
-                                
-                                if (metadataReader.getAnnotationMetadata().hasAnnotation(RestController.class.getName())) {
-                                    Class<?> clazz = Class.forName(className);
-                                    controllers.add(clazz);
-                                }
-                            } catch (ClassNotFoundException e) {
-                                // Игнорируем
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    log.debug("Error scanning package: {}", packageName, e);
-                }
-            }
-        } catch (Exception e) {
-            log.error("Error scanning controllers", e);
-        }
-        
-        return controllers;
-    }
-
-    /**
-     * Сканирует все контроллеры в classpath
-     */
-    private Set<Class<?>> scanAllControllersInClasspath() {
-        Set<Class<?>> controllers = new HashSet<>();
-        
-        try {
-            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-            MetadataReaderFactory metadataReaderFactory = new CachingMetadataReaderFactory(resolver);
-            String pattern = "classpath*:**/*.class";
-            Resource[] resources = resolver.getResources(pattern);
-            
-            for (Resource resource : resources) {
-                if (resource.isReadable()) {
-                    try {
-                        MetadataReader metadataReader = metadataReaderFactory.getMetadataReader(resource);
-                        String className = metadataReader.getClassMetadata().getClassName();
-                        
-                        if (isSystemClass(className)) {
-                            continue;
-                        }
-                        
-                        if (metadataReader.getAnnotationMetadata().hasAnnotation(RestController.class.getName())) {
-                            Class<?> clazz = Class.forName(className);
-                            controllers.add(clazz);
-                        }
-                    } catch (ClassNotFoundException e) {
-                        // Игнорируем
-                    }
-                }
-            }
-        } catch (Exception e) {
-            log.error("Error scanning all controllers", e);
-        }
-        
-        return controllers;
-    }
-
-    /**
-     * Проверяет, является ли класс системным (не нужно сканировать)
+     * Возвращает записи индекса classpath для контроллеров: из указанных пакетов
+     * или из всего classpath (endpoint-scanner.lazy.auto-scan-all=true)
      */
-    private boolean isSystemClass(String className) {
-        return className.startsWith("org.springframework") ||
-               className.startsWith("org.apache") ||
-               className.startsWith("java.") ||
-               className.startsWith("javax.") ||
-               className.startsWith("jakarta.") ||
-               className.contains("$");
+    private List<ClasspathIndex.ControllerEntry> findControllerEntries() {
+        return autoScanAll
+                ? classpathIndex.findAllControllers()
+                : classpathIndex.findControllersInPackages(scanPackages);
     }
 }
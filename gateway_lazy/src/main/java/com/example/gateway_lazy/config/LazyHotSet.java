@@ -0,0 +1,153 @@
+package com.example.gateway_lazy.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячий набор контроллеров между перезапусками gateway_lazy.
+ *
+ * Контроллеры, которые использовались во время работы, и шаблоны путей, для которых ленивое
+ * сканирование нашло правило, периодически и при остановке сохраняются в небольшой локальный файл:
+ * по строке на имя класса или на шаблон (метод и ключ совпадения базовых путей через пробел,
+ * например "GET /api/items"). При следующем старте они сканируются заранее, параллельно
+ * на планировщике ленивого сканирования, до того как приложение будет готово принимать трафик.
+ * Шаблон находит контроллер и после его переименования. Остальные контроллеры остаются ленивыми.
+ *
+ * Выключен по умолчанию, как и фоновый прогрев (endpoint-scanner.lazy.hot-set.enabled=true включает).
+ */
+@Component
+@ConditionalOnProperty(name = "endpoint-scanner.lazy.hot-set.enabled", havingValue = "true", matchIfMissing = false)
+public class LazyHotSet implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LazyHotSet.class);
+
+    private final LazyEndpointScanner lazyScanner;
+    private final ScheduledExecutorService scheduler;
+
+    @Value("${endpoint-scanner.lazy.hot-set.file:${java.io.tmpdir}/gateway_lazy-hot-set.txt}")
+    private String hotSetFile;
+
+    @Value("${endpoint-scanner.lazy.hot-set.save-interval-ms:60000}")
+    private long saveIntervalMs;
+
+    @Value("${endpoint-scanner.lazy.hot-set.preload-concurrency:4}")
+    private int preloadConcurrency;
+
+    @Value("${endpoint-scanner.lazy.hot-set.preload-timeout-ms:30000}")
+    private long preloadTimeoutMs;
+
+    // Последний сохраненный набор - файл не перезаписывается, если набор не изменился
+    private volatile Set<String> savedHotSet = Collections.emptySet();
+
+    public LazyHotSet(LazyEndpointScanner lazyScanner) {
+        this.lazyScanner = lazyScanner;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lazy-hot-set");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Сканирует сохраненный горячий набор до готовности приложения
+     */
+    @Override
+    public void run(String... args) {
+        Set<String> hotSet = load();
+        if (!hotSet.isEmpty()) {
+            long start = System.currentTimeMillis();
+            try {
+                Long preloaded = Flux.fromIterable(hotSet)
+                        .flatMap(line -> isTemplate(line)
+                                ? lazyScanner.preloadTemplate(line)
+                                : lazyScanner.preloadController(line), Math.max(1, preloadConcurrency))
+                        .filter(Boolean::booleanValue)
+                        .count()
+                        .block(Duration.ofMillis(preloadTimeoutMs));
+                log.info("Preloaded {} of {} hot controllers and templates from {} in {} ms",
+                        preloaded, hotSet.size(), hotSetFile, System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                // Не дождались - оставшиеся контроллеры отсканируются лениво
+                log.warn("Hot set preload did not complete in {} ms: {}", preloadTimeoutMs, e.getMessage());
+            }
+        }
+        savedHotSet = hotSet;
+        scheduler.scheduleWithFixedDelay(this::save, saveIntervalMs, saveIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        save();
+    }
+
+    /**
+     * Сохраняет текущий горячий набор, если он изменился с последнего сохранения
+     */
+    private synchronized void save() {
+        Set<String> hotSet = new TreeSet<>(lazyScanner.findHotControllers());
+        hotSet.addAll(lazyScanner.findHotTemplates());
+        if (hotSet.equals(savedHotSet)) {
+            return;
+        }
+        Path file = Paths.get(hotSetFile);
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            // Запись через временный файл - при остановке посреди записи старый набор не портится
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tempFile, hotSet, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            savedHotSet = hotSet;
+            log.debug("Saved {} hot controllers and templates to {}", hotSet.size(), file);
+        } catch (IOException e) {
+            log.warn("Failed to save hot controller set to {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Set<String> load() {
+        Path file = Paths.get(hotSetFile);
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptySet();
+        }
+        try {
+            Set<String> hotSet = new TreeSet<>();
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String entry = line.trim();
+                if (!entry.isEmpty()) {
+                    hotSet.add(entry);
+                }
+            }
+            return hotSet;
+        } catch (IOException e) {
+            log.warn("Failed to read hot controller set from {}: {}", file, e.getMessage());
+            return Collections.emptySet();
+        }
+    }
+
+    /**
+     * Строка горячего набора с шаблоном ("GET /api/items"), а не с именем класса
+     */
+    private static boolean isTemplate(String line) {
+        return line.indexOf(' ') > 0;
+    }
+}
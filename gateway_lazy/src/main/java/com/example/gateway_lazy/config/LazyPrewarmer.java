@@ -0,0 +1,113 @@
+package com.example.gateway_lazy.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Фоновый прогрев ленивого сканера: после старта приложения постепенно сканирует контроллеры,
+ * к которым еще не было запросов, чтобы первый запрос к ним не ждал сканирования.
+ *
+ * Приложение начинает обслуживать запросы сразу, прогрев идет в отдельном потоке.
+ * Первыми сканируются контроллеры, в префиксы путей которых уже идут запросы. Между сканированиями
+ * поток делает паузу, чтобы доля времени, занятого сканированием, не превышала
+ * endpoint-scanner.lazy.prewarm.cpu-share. Нагрузку ограничивает только эта пауза: минимальный
+ * приоритет потока на Linux планировщиком ОС не учитывается.
+ *
+ * Контроллеры, отсканированные по запросам за время прогрева, пропускаются и не считаются прогретыми.
+ *
+ * Выключен по умолчанию (endpoint-scanner.lazy.prewarm.enabled=true включает): сканирования прогрева
+ * занимают те же места, что и сканирования по запросам, и запрос, ожидающий такого сканирования,
+ * при превышении scan-timeout-ms получает отказ.
+ */
+@Component
+@ConditionalOnProperty(name = "endpoint-scanner.lazy.prewarm.enabled", havingValue = "true", matchIfMissing = false)
+public class LazyPrewarmer implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(LazyPrewarmer.class);
+
+    private final LazyEndpointScanner lazyScanner;
+
+    @Value("${endpoint-scanner.lazy.prewarm.initial-delay-ms:5000}")
+    private long initialDelayMs;
+
+    @Value("${endpoint-scanner.lazy.prewarm.cpu-share:0.1}")
+    private double cpuShare;
+
+    private volatile Thread prewarmThread;
+
+    public LazyPrewarmer(LazyEndpointScanner lazyScanner) {
+        this.lazyScanner = lazyScanner;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (prewarmThread != null) {
+            return;
+        }
+        Thread thread = new Thread(this::prewarm, "lazy-prewarm");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        prewarmThread = thread;
+        thread.start();
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        Thread thread = prewarmThread;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void prewarm() {
+        try {
+            Thread.sleep(initialDelayMs);
+            long start = System.currentTimeMillis();
+            int prewarmed = 0;
+            List<ClasspathIndex.ControllerEntry> remaining = lazyScanner.findUnscannedControllers();
+            log.info("Background prewarm started for {} controllers (cpu share {})", remaining.size(), cpuShare);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                // Запросы могли отсканировать часть контроллеров, пока поток спал
+                remaining.removeIf(entry -> lazyScanner.isControllerScanned(entry.getClassName()));
+                if (remaining.isEmpty()) {
+                    break;
+                }
+                // Порядок пересчитывается перед каждым сканированием - трафик меняется по ходу прогрева
+                ClasspathIndex.ControllerEntry next = remaining.stream()
+                        .max(Comparator.comparingLong(lazyScanner::getPrefixTraffic))
+                        .get();
+                remaining.remove(next);
+
+                long scanStart = System.nanoTime();
+                if (lazyScanner.prewarmController(next.getClassName())) {
+                    prewarmed++;
+                }
+                long scanMillis = (System.nanoTime() - scanStart) / 1_000_000;
+                Thread.sleep(pauseAfter(scanMillis));
+            }
+            log.info("Background prewarm finished: scanned {} controllers in {} ms",
+                    prewarmed, System.currentTimeMillis() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Background prewarm stopped", e);
+        }
+    }
+
+    /**
+     * Пауза после сканирования, при которой сканирование занимает не больше cpu-share времени потока
+     */
+    private long pauseAfter(long scanMillis) {
+        double share = Math.max(0.01, Math.min(1.0, cpuShare));
+        return Math.max(1, (long) (scanMillis * (1 - share) / share));
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.gateway_lazy.config;
+
+import java.util.*;
+
+/**
+ * Фильтр пакетов для сканирования classpath на основе префиксного дерева.
+ * Пакеты задаются списками include/exclude; побеждает самый длинный совпавший префикс.
+ * Если список include пуст, принимается все, что не исключено.
+ *
+ * Дерево позволяет отбрасывать целые директории и jar-файлы еще до чтения class-файлов:
+ * canSkipSubtree() отвечает, может ли в пакете или его подпакетах быть что-то нужное.
+ */
+public class PackageFilter {
+
+    /**
+     * Пакеты библиотек, в которых не бывает контроллеров приложения
+     */
+    public static final String DEFAULT_EXCLUDES =
+            "java,javax,jakarta,jdk,sun,com.sun," +
+            "org.springframework,org.apache,org.slf4j,ch.qos,org.yaml,org.jboss,org.hibernate," +
+            "reactor,io.projectreactor,org.reactivestreams,io.netty,io.micrometer," +
+            "com.fasterxml,com.google,org.aspectj,net.bytebuddy,org.objenesis," +
+            "kotlin,kotlinx,lombok,org.junit,org.mockito,org.assertj,org.hamcrest," +
+            "org.bouncycastle,org.hdrhistogram,org.latencyutils,org.jetbrains,org.intellij," +
+            "com.zaxxer,org.postgresql,com.mysql,org.h2,org.thymeleaf,org.attoparser";
+
+    private final Node root = new Node();
+    private final boolean hasIncludes;
+
+    public PackageFilter(Collection<String> includes, Collection<String> excludes) {
+        for (String include : includes) {
+            insert(include, Boolean.TRUE);
+        }
+        for (String exclude : excludes) {
+            insert(exclude, Boolean.FALSE);
+        }
+        this.hasIncludes = !includes.isEmpty();
+    }
+
+    /**
+     * Создает фильтр из списков пакетов, разделенных запятой
+     */
+    public static PackageFilter of(String includes, String excludes) {
+        return new PackageFilter(split(includes), split(excludes));
+    }
+
+    /**
+     * Проверяет, нужно ли сканировать класс или пакет
+     */
+    public boolean accepts(String name) {
+        Boolean decision = !hasIncludes;
+        Node node = root;
+        for (String segment : segments(name)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                break;
+            }
+            if (node.mark != null) {
+                decision = node.mark;
+            }
+        }
+        return decision;
+    }
+
+    /**
+     * Проверяет, можно ли пропустить пакет вместе со всеми подпакетами
+     */
+    public boolean canSkipSubtree(String packageName) {
+        Boolean decision = !hasIncludes;
+        Node node = root;
+        for (String segment : segments(packageName)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                // Глубже нет ни одного правила - решение определяет последний совпавший префикс
+                return !decision;
+            }
+            if (node.mark != null) {
+                decision = node.mark;
+            }
+        }
+        return !decision && !node.includeBelow;
+    }
+
+    /**
+     * Проверяет, исключен ли пакет вместе с подпакетами явным правилом exclude.
+     * В отличие от canSkipSubtree(), несовпадение со списком include здесь исключением не считается:
+     * используется для имен, которые не обязаны совпадать с пакетами (например, имя модуля jar).
+     */
+    public boolean isExcludedSubtree(String packageName) {
+        Boolean decision = null;
+        Node node = root;
+        for (String segment : segments(packageName)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return Boolean.FALSE.equals(decision);
+            }
+            if (node.mark != null) {
+                decision = node.mark;
+            }
+        }
+        return Boolean.FALSE.equals(decision) && !node.includeBelow;
+    }
+
+    private void insert(String packageName, Boolean mark) {
+        Node node = root;
+        for (String segment : segments(packageName)) {
+            if (mark) {
+                node.includeBelow = true;
+            }
+            node = node.children.computeIfAbsent(segment, s -> new Node());
+        }
+        node.mark = mark;
+    }
+
+    private static List<String> segments(String name) {
+        List<String> result = new ArrayList<>();
+        for (String segment : name.replace('/', '.').split("\\.")) {
+            if (!segment.isEmpty()) {
+                result.add(segment);
+            }
+        }
+        return result;
+    }
+
+    private static List<String> split(String packages) {
+        List<String> result = new ArrayList<>();
+        if (packages == null) {
+            return result;
+        }
+        for (String packageName : packages.split(",")) {
+            if (!packageName.isBlank()) {
+                result.add(packageName.trim());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Узел дерева: один сегмент имени пакета
+     */
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        // TRUE - включить, FALSE - исключить, null - правило не задано
+        private Boolean mark;
+        // Есть ли правило include в этом узле или ниже
+        private boolean includeBelow;
+    }
+}
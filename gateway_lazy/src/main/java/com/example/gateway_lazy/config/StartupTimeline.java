@@ -0,0 +1,84 @@
+package com.example.gateway_lazy.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Хронология старта gateway_lazy: от запуска JVM до первого решения авторизации по правилу.
+ * Разбивает время по фазам: обновление контекста и первое ленивое сканирование контроллера.
+ *
+ * Строку "Time to first authorization decision" разбирает scripts/startup-benchmark.sh.
+ */
+@Component
+public class StartupTimeline implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimeline.class);
+
+    public static final String FIRST_LAZY_SCAN = "first-lazy-scan";
+
+    private final long jvmStartTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    // Фаза -> длительность в мс (фиксируется только первое выполнение - при старте)
+    private final Map<String, Long> phaseDurations = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final AtomicBoolean firstDecisionRecorded = new AtomicBoolean();
+
+    private volatile long contextRefreshedAt = -1;
+    private volatile long firstDecisionAt = -1;
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (contextRefreshedAt < 0 && event.getApplicationContext().getParent() == null) {
+            contextRefreshedAt = sinceJvmStart();
+            log.info("Context refreshed {} ms after JVM start", contextRefreshedAt);
+        }
+    }
+
+    /**
+     * Фиксирует длительность фазы старта. Повторные вызовы (пересканирования) игнорируются.
+     */
+    public void recordPhase(String phase, long durationMs) {
+        if (phaseDurations.putIfAbsent(phase, durationMs) == null) {
+            log.info("Startup phase {} took {} ms", phase, durationMs);
+        }
+    }
+
+    /**
+     * Фиксирует первое решение авторизации, принятое по правилу из реестра
+     */
+    public void recordFirstDecision() {
+        if (firstDecisionRecorded.get() || !firstDecisionRecorded.compareAndSet(false, true)) {
+            return;
+        }
+        firstDecisionAt = sinceJvmStart();
+        log.info("Time to first authorization decision: {} ms (context refresh at {} ms, phases: {})",
+                firstDecisionAt, contextRefreshedAt, getPhaseDurations());
+    }
+
+    /**
+     * Возвращает хронологию старта
+     */
+    public Map<String, Object> getTimeline() {
+        Map<String, Object> timeline = new LinkedHashMap<>();
+        timeline.put("contextRefreshedAtMs", contextRefreshedAt);
+        timeline.put("phasesMs", getPhaseDurations());
+        timeline.put("firstDecisionAtMs", firstDecisionAt);
+        return timeline;
+    }
+
+    private Map<String, Long> getPhaseDurations() {
+        synchronized (phaseDurations) {
+            return new LinkedHashMap<>(phaseDurations);
+        }
+    }
+
+    private long sinceJvmStart() {
+        return System.currentTimeMillis() - jvmStartTime;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.gateway_lazy.security;
 
 import com.example.gateway_lazy.config.EndpointAuthorizationRegistry;
 import com.example.gateway_lazy.config.LazyEndpointScanner;
+import com.example.gateway_lazy.config.StartupTimeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authorization.AuthorizationDecision;
@@ -25,6 +26,11 @@ import java.util.function.BiFunction;
  * 2. Находит метод CustomAuthorizationManager из EndpointAuthorizationRegistry
  * 3. Если не найдено, пытается отсканировать эндпоинт через LazyEndpointScanner
  * 4. Вызывает соответствующий метод для проверки прав доступа
+ *
+ * Ленивое сканирование встраивается в конвейер как Mono и выполняется на отдельном
+ * планировщике, поэтому поток event loop не блокируется обходом classpath.
+ * Если сканирование не удалось (например, планировщик перегружен и отклонил задачу), доступ
+ * запрещается: правило эндпоинта могло не попасть в реестр, и разрешать запрос без него нельзя.
  */
 @Component
 public class AnnotationBasedAuthorizationChecker {
@@ -33,11 +39,14 @@ public class AnnotationBasedAuthorizationChecker {
 
     private final EndpointAuthorizationRegistry endpointRegistry;
     private final LazyEndpointScanner lazyScanner;
+    private final StartupTimeline startupTimeline;
 
     public AnnotationBasedAuthorizationChecker(EndpointAuthorizationRegistry endpointRegistry,
-                                               LazyEndpointScanner lazyScanner) {
+                                               LazyEndpointScanner lazyScanner,
+                                               StartupTimeline startupTimeline) {
         this.endpointRegistry = endpointRegistry;
         this.lazyScanner = lazyScanner;
+        this.startupTimeline = startupTimeline;
     }
 
     /**
@@ -61,28 +70,52 @@ public class AnnotationBasedAuthorizationChecker {
         String path = exchange.getRequest().getPath().value();
         
         log.debug("Checking authorization for {} {}", method, path);
+        if (lazyScanner != null) {
+            lazyScanner.recordRequest(path);
+        }
         
         // Находим метод авторизации из реестра
         BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> authorizationMethod = 
             endpointRegistry.findAuthorizationMethod(method, path);
         
-        // Если не найдено, пытаемся отсканировать эндпоинт
-        if (authorizationMethod == null && lazyScanner != null) {
-            log.debug("Authorization method not found, attempting lazy scan for {} {}", method, path);
-            boolean scanned = lazyScanner.scanEndpointOnDemand(method, path);
-            
-            if (scanned) {
-                // Пытаемся найти снова после сканирования
-                authorizationMethod = endpointRegistry.findAuthorizationMethod(method, path);
-            }
+        if (authorizationMethod != null) {
+            return applyAuthorizationMethod(authorizationMethod, authenticationMono, context, method, path);
         }
         
-        if (authorizationMethod != null) {
-            // Вызываем соответствующий метод CustomAuthorizationManager
-            log.debug("Found authorization method for {} {}", method, path);
-            return authorizationMethod.apply(authenticationMono, context);
+        // Если не найдено, пытаемся отсканировать эндпоинт (вне event loop)
+        if (lazyScanner != null) {
+            log.debug("Authorization method not found, attempting lazy scan for {} {}", method, path);
+            return lazyScanner.scanEndpoint(method, path)
+                    .flatMap(scanned -> {
+                        // Пытаемся найти снова после сканирования
+                        BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> scannedMethod =
+                                scanned ? endpointRegistry.findAuthorizationMethod(method, path) : null;
+                        return scannedMethod != null
+                                ? applyAuthorizationMethod(scannedMethod, authenticationMono, context, method, path)
+                                : allowWithoutRule(method, path);
+                    })
+                    .onErrorResume(e -> {
+                        // Например, планировщик сканирования перегружен и отклонил задачу:
+                        // правило эндпоинта неизвестно, поэтому запрещаем доступ
+                        log.warn("Could not resolve authorization rule for {} {}, denying access: {}",
+                                method, path, e.toString());
+                        return Mono.just(new AuthorizationDecision(false));
+                    });
         }
         
+        return allowWithoutRule(method, path);
+    }
+
+    private Mono<AuthorizationDecision> applyAuthorizationMethod(
+            BiFunction<Mono<Authentication>, AuthorizationContext, Mono<AuthorizationDecision>> authorizationMethod,
+            Mono<Authentication> authenticationMono, AuthorizationContext context, String method, String path) {
+        // Вызываем соответствующий метод CustomAuthorizationManager
+        log.debug("Found authorization method for {} {}", method, path);
+        return authorizationMethod.apply(authenticationMono, context)
+                .doOnNext(decision -> startupTimeline.recordFirstDecision());
+    }
+
+    private Mono<AuthorizationDecision> allowWithoutRule(String method, String path) {
         // Если нет правила для эндпоинта, разрешаем доступ
         // (аутентификация уже проверена в другом проекте)
         log.debug("No authorization rule found for {} {}, allowing access", method, path);
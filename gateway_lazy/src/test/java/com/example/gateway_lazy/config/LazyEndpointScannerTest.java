@@ -0,0 +1,161 @@
+package com.example.gateway_lazy.config;
+
+import com.example.gateway_lazy.config.slow.ScanGate;
+import com.example.gateway_lazy.config.stalled.StallGate;
+import com.example.gateway_lazy.security.CustomAuthorizationManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class LazyEndpointScannerTest {
+
+    private final EndpointAuthorizationRegistry registry = new EndpointAuthorizationRegistry();
+    private LazyEndpointScanner scanner;
+
+    @AfterEach
+    void tearDown() {
+        ScanGate.RELEASE.countDown();
+        if (scanner != null) {
+            scanner.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentMissesShareOneScanWithoutHoldingSchedulerThreads() throws Exception {
+        // Один поток и одна задача в очереди: если бы каждый ожидающий запрос занимал задачу
+        // планировщика, большинство запросов были бы отклонены
+        scanner = newScanner("com.example.gateway_lazy.config.slow", 1, 1, 10000);
+
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(scanner.scanEndpoint("GET", "/api/slow/" + i).toFuture());
+        }
+        ScanGate.RELEASE.countDown();
+
+        for (CompletableFuture<Boolean> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(registry.findAuthorizationMethod("GET", "/api/slow/42")).isNotNull();
+        assertThat(scanner.findUnscannedControllers()).isEmpty();
+    }
+
+    @Test
+    void prewarmSkipsControllerScannedByRequest() {
+        scanner = newScanner("com.example.gateway_lazy.config.prewarm", 2, 10, 5000);
+        String className = "com.example.gateway_lazy.config.prewarm.ItemController";
+
+        assertThat(scanner.scanEndpoint("GET", "/api/prewarm/items/1").block()).isTrue();
+
+        assertThat(scanner.isControllerScanned(className)).isTrue();
+        assertThat(scanner.findUnscannedControllers()).isEmpty();
+        assertThat(scanner.prewarmController(className)).isFalse();
+        assertThat(registry.size()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectedScanIsReportedAndNotCachedAsMissingRule() {
+        scanner = newScanner("com.example.gateway_lazy.config.prewarm", 1, 10, 5000);
+        scanner.findUnscannedControllers();
+        // Остановленный планировщик отклоняет задачи так же, как переполненный
+        ((Scheduler) ReflectionTestUtils.getField(scanner, "scanScheduler")).dispose();
+
+        assertThatThrownBy(() -> scanner.scanEndpoint("GET", "/api/prewarm/items/1").block())
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(scanner.isControllerScanned("com.example.gateway_lazy.config.prewarm.ItemController")).isFalse();
+
+        ReflectionTestUtils.setField(scanner, "scanScheduler", Schedulers.newBoundedElastic(1, 10, "lazy-scan-test"));
+        assertThat(scanner.scanEndpoint("GET", "/api/prewarm/items/1").block()).isTrue();
+    }
+
+    @Test
+    void scanTimeoutIsReportedAndNotCachedAsMissingRule() {
+        scanner = newScanner("com.example.gateway_lazy.config.stalled", 2, 10, 200);
+
+        try {
+            // Правила контроллера еще неизвестны - вызывающий должен получить ошибку, а не "правила нет"
+            assertThatThrownBy(() -> scanner.scanEndpoint("GET", "/api/stalled/1").block())
+                    .hasRootCauseInstanceOf(TimeoutException.class);
+        } finally {
+            StallGate.RELEASE.countDown();
+        }
+        ReflectionTestUtils.setField(scanner, "scanTimeoutMs", 5000L);
+        assertThat(scanner.scanEndpoint("GET", "/api/stalled/1").block()).isTrue();
+    }
+
+    @Test
+    void hitTemplateIsRememberedAndPreloadsItsController() {
+        scanner = newScanner("com.example.gateway_lazy.config.prewarm", 2, 10, 5000);
+        assertThat(scanner.scanEndpoint("GET", "/api/prewarm/items/1").block()).isTrue();
+        assertThat(scanner.findHotTemplates()).containsExactly("GET /api/prewarm/items");
+        scanner.shutdown();
+
+        // Следующий старт: шаблон из горячего набора сканирует контроллер до первого запроса
+        scanner = newScanner("com.example.gateway_lazy.config.prewarm", 2, 10, 5000);
+        assertThat(scanner.preloadTemplate("GET /api/prewarm/items").block()).isTrue();
+        assertThat(scanner.isControllerScanned("com.example.gateway_lazy.config.prewarm.ItemController")).isTrue();
+    }
+
+    @Test
+    void controllerIsFoundUnderEveryClassLevelPath() {
+        scanner = newScanner("com.example.gateway_lazy.config.multipath", 1, 10, 5000);
+
+        assertThat(scanner.scanEndpoint("GET", "/api/legacy/orders/1").block()).isTrue();
+
+        assertThat(registry.findAuthorizationMethod("GET", "/api/legacy/orders/1")).isNotNull();
+        assertThat(registry.findAuthorizationMethod("GET", "/api/orders/1")).isNotNull();
+    }
+
+    @Test
+    void baseIndexIsRebuiltWhenClasspathIndexChanges() {
+        List<ClasspathIndex.ControllerEntry> visible = new ArrayList<>();
+        ClasspathIndex classpathIndex = new ClasspathIndex() {
+            @Override
+            public List<ClasspathIndex.ControllerEntry> findControllersInPackages(String packages) {
+                return List.copyOf(visible);
+            }
+        };
+        scanner = newScanner(classpathIndex, "com.example.gateway_lazy.config.multipath", 1, 10, 5000);
+
+        assertThat(scanner.scanEndpoint("GET", "/api/orders/1").block()).isFalse();
+
+        // Контроллер появился после построения индекса базовых путей
+        visible.add(new ClasspathIndex.ControllerEntry("com.example.gateway_lazy.config.multipath.OrderController",
+                "test", "test", List.of("/api/orders", "/api/legacy/orders")));
+        classpathIndex.invalidate();
+
+        assertThat(scanner.scanEndpoint("GET", "/api/orders/1").block()).isTrue();
+        assertThat(scanner.findUnscannedControllers()).isEmpty();
+    }
+
+    private LazyEndpointScanner newScanner(String scanPackages, int threads, int queueSize, long scanTimeoutMs) {
+        return newScanner(new ClasspathIndex(), scanPackages, threads, queueSize, scanTimeoutMs);
+    }
+
+    private LazyEndpointScanner newScanner(ClasspathIndex classpathIndex, String scanPackages,
+                                           int threads, int queueSize, long scanTimeoutMs) {
+        LazyEndpointScanner lazyScanner = new LazyEndpointScanner(registry, mock(CustomAuthorizationManager.class),
+                classpathIndex, new StartupTimeline());
+        ReflectionTestUtils.setField(lazyScanner, "negativeCacheMaxSize", 100);
+        ReflectionTestUtils.setField(lazyScanner, "negativeCacheTtlMs", 60000L);
+        ReflectionTestUtils.setField(lazyScanner, "scanTimeoutMs", scanTimeoutMs);
+        ReflectionTestUtils.setField(lazyScanner, "schedulerThreads", threads);
+        ReflectionTestUtils.setField(lazyScanner, "schedulerQueueSize", queueSize);
+        ReflectionTestUtils.setField(lazyScanner, "scanPackages", scanPackages);
+        ReflectionTestUtils.setField(lazyScanner, "autoScanAll", false);
+        lazyScanner.init();
+        return lazyScanner;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.gateway_lazy.config.multipath;
+
+import com.example.commons.security.annotation.RequireReadWare;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping({"/api/orders", "/api/legacy/orders"})
+public class OrderController {
+
+    @GetMapping("/{id}")
+    @RequireReadWare
+    public String get(@PathVariable String id) {
+        return id;
+    }
+}
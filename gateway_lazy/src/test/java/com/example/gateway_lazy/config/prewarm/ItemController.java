@@ -0,0 +1,21 @@
+package com.example.gateway_lazy.config.prewarm;
+
+import com.example.commons.security.annotation.RequireReadWare;
+import com.example.commons.security.annotation.RequireWriteWare;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/prewarm/items")
+public class ItemController {
+
+    @GetMapping("/{id}")
+    @RequireReadWare
+    public String get(@PathVariable String id) {
+        return id;
+    }
+
+    @PostMapping
+    @RequireWriteWare
+    public void create() {
+    }
+}
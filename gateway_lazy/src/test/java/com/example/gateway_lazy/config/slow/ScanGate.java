@@ -0,0 +1,15 @@
+package com.example.gateway_lazy.config.slow;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Сигнал, которого ждет инициализация SlowController. Вынесен в отдельный класс,
+ * чтобы обращение теста к нему не запускало инициализацию контроллера.
+ */
+public final class ScanGate {
+
+    public static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+    private ScanGate() {
+    }
+}
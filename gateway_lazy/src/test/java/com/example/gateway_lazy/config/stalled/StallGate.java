@@ -0,0 +1,15 @@
+package com.example.gateway_lazy.config.stalled;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Сигнал, которого ждет инициализация StalledController. Вынесен в отдельный класс,
+ * чтобы обращение теста к нему не запускало инициализацию контроллера.
+ */
+public final class StallGate {
+
+    public static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+    private StallGate() {
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.gateway_lazy.config.stalled;
+
+import com.example.commons.security.annotation.RequireReadWare;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Контроллер, загрузка которого ждет StallGate.RELEASE: сканирование не успевает
+ * завершиться за scan-timeout-ms, пока тест не откроет сигнал
+ */
+@RestController
+@RequestMapping("/api/stalled")
+public class StalledController {
+
+    static {
+        try {
+            StallGate.RELEASE.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @GetMapping("/{id}")
+    @RequireReadWare
+    public String get(@PathVariable String id) {
+        return id;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.gateway_lazy.security;
+
+import com.example.gateway_lazy.config.EndpointAuthorizationRegistry;
+import com.example.gateway_lazy.config.LazyEndpointScanner;
+import com.example.gateway_lazy.config.StartupTimeline;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AnnotationBasedAuthorizationCheckerTest {
+
+    @Test
+    void rejectedLazyScanDeniesAccess() {
+        LazyEndpointScanner scanner = mock(LazyEndpointScanner.class);
+        when(scanner.scanEndpoint("GET", "/api/items/1"))
+                .thenReturn(Mono.error(new RejectedExecutionException("lazy-scan queue is full")));
+        AnnotationBasedAuthorizationChecker checker = new AnnotationBasedAuthorizationChecker(
+                new EndpointAuthorizationRegistry(), scanner, new StartupTimeline());
+
+        AuthorizationDecision decision = checker.checkAuthorization(Mono.empty(), context("/api/items/1")).block();
+
+        assertThat(decision).isNotNull();
+        assertThat(decision.isGranted()).isFalse();
+    }
+
+    @Test
+    void endpointWithoutRuleIsAllowed() {
+        LazyEndpointScanner scanner = mock(LazyEndpointScanner.class);
+        when(scanner.scanEndpoint("GET", "/api/open")).thenReturn(Mono.just(false));
+        AnnotationBasedAuthorizationChecker checker = new AnnotationBasedAuthorizationChecker(
+                new EndpointAuthorizationRegistry(), scanner, new StartupTimeline());
+
+        AuthorizationDecision decision = checker.checkAuthorization(Mono.empty(), context("/api/open")).block();
+
+        assertThat(decision).isNotNull();
+        assertThat(decision.isGranted()).isTrue();
+    }
+
+    private static AuthorizationContext context(String path) {
+        return new AuthorizationContext(MockServerWebExchange.from(MockServerHttpRequest.get(path)));
+    }
+}
@@ -0,0 +1,42 @@
+#!/usr/bin/env bash
+# Общие функции для build-appcds-archive.sh и startup-benchmark.sh.
+#
+# AppCDS не архивирует классы из вложенных jar исполняемого Spring Boot jar
+# (их грузит собственный загрузчик Spring Boot), поэтому jar распаковывается в
+# обычный classpath: <app>-cds/application.jar + <app>-cds/lib/*.jar, и приложение
+# запускается через Start-Class из манифеста. Порядок classpath фиксирован -
+# при записи и при использовании архива он должен совпадать.
+
+# Готовит распакованный classpath и заполняет массив LAUNCH аргументами запуска
+prepare_launch() {
+    local jar="$1" dir main_class
+    dir="${jar%.jar}-cds"
+
+    if ! unzip -Z1 "$jar" "BOOT-INF/classes/*" >/dev/null 2>&1; then
+        # Обычный jar (не Spring Boot fat jar) запускается как есть
+        LAUNCH=(-jar "$jar")
+        return
+    fi
+
+    if [ ! -f "$dir/application.jar" ] || [ "$jar" -nt "$dir/application.jar" ]; then
+        rm -rf "$dir"
+        mkdir -p "$dir/unpacked"
+        unzip -q "$jar" -d "$dir/unpacked"
+        mv "$dir/unpacked/BOOT-INF/lib" "$dir/lib"
+        (cd "$dir/unpacked/BOOT-INF/classes" && jar cf ../../../application.jar .)
+        cp "$dir/unpacked/META-INF/MANIFEST.MF" "$dir/MANIFEST.MF"
+        rm -rf "$dir/unpacked"
+    fi
+
+    main_class="$(sed -n 's/^Start-Class: *//p' "$dir/MANIFEST.MF" | tr -d '\r')"
+    if [ -z "$main_class" ]; then
+        echo "Start-Class not found in $jar manifest" >&2
+        exit 1
+    fi
+
+    local classpath="$dir/application.jar" lib
+    for lib in $(ls "$dir/lib" | sort); do
+        classpath="$classpath:$dir/lib/$lib"
+    done
+    LAUNCH=(-cp "$classpath" "$main_class")
+}
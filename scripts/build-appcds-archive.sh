@@ -0,0 +1,76 @@
+#!/usr/bin/env bash
+# Создает динамический AppCDS-архив для приложения с gateway или gateway_lazy.
+#
+# Архив записывается после тренировочного запуска: приложение стартует, получает
+# пробные запросы до первого решения авторизации (чтобы в архив попали классы
+# сканирования и проверки прав) и штатно останавливается.
+#
+# Использование:
+#   scripts/build-appcds-archive.sh <app.jar> <archive.jsa> [probe-url]
+#
+# Переменные окружения:
+#   JAVA       - java для запуска (по умолчанию java из PATH)
+#   JAVA_OPTS  - дополнительные опции JVM
+#   CURL_OPTS  - опции curl для пробного запроса (например, -H "X-User-Id: user1")
+#   TIMEOUT    - сколько секунд ждать первого решения (по умолчанию 120)
+
+set -euo pipefail
+
+if [ $# -lt 2 ]; then
+    echo "Usage: $0 <app.jar> <archive.jsa> [probe-url]" >&2
+    exit 1
+fi
+
+JAR="$1"
+ARCHIVE="$2"
+PROBE_URL="${3:-}"
+JAVA="${JAVA:-java}"
+TIMEOUT="${TIMEOUT:-120}"
+LOG="$(mktemp)"
+
+# shellcheck source=appcds-common.sh
+. "$(cd "$(dirname "$0")" && pwd)/appcds-common.sh"
+prepare_launch "$JAR"
+
+rm -f "$ARCHIVE"
+
+# shellcheck disable=SC2086
+"$JAVA" -XX:ArchiveClassesAtExit="$ARCHIVE" ${JAVA_OPTS:-} "${LAUNCH[@]}" >"$LOG" 2>&1 &
+PID=$!
+
+# Готовность: первое решение авторизации, а без пробного URL - завершение старта Spring Boot
+if [ -n "$PROBE_URL" ]; then
+    READY_PATTERN="Time to first authorization decision"
+else
+    READY_PATTERN="Started .* in .* seconds"
+fi
+
+deadline=$((SECONDS + TIMEOUT))
+until grep -q "$READY_PATTERN" "$LOG"; do
+    if ! kill -0 "$PID" 2>/dev/null; then
+        echo "Application exited during training run, see $LOG" >&2
+        exit 1
+    fi
+    if [ "$SECONDS" -ge "$deadline" ]; then
+        kill "$PID" 2>/dev/null || true
+        echo "Timed out waiting for '$READY_PATTERN', see $LOG" >&2
+        exit 1
+    fi
+    if [ -n "$PROBE_URL" ]; then
+        # shellcheck disable=SC2086
+        curl -s -o /dev/null ${CURL_OPTS:-} "$PROBE_URL" || true
+    fi
+    sleep 0.1
+done
+
+# Архив записывается при штатной остановке JVM
+kill -TERM "$PID"
+wait "$PID" || true
+
+if [ ! -s "$ARCHIVE" ]; then
+    echo "AppCDS archive was not created, see $LOG" >&2
+    exit 1
+fi
+
+rm -f "$LOG"
+echo "AppCDS archive created: $ARCHIVE ($(du -h "$ARCHIVE" | cut -f1))"
@@ -0,0 +1,91 @@
+#!/usr/bin/env bash
+# Измеряет время от запуска JVM до первого решения авторизации (time to first decision)
+# для приложения с gateway или gateway_lazy - без AppCDS и с AppCDS-архивом.
+#
+# Время и фазы старта берутся из строки StartupTimeline:
+#   Time to first authorization decision: N ms (context refresh at N ms, phases: {...})
+#
+# Использование:
+#   scripts/startup-benchmark.sh <app.jar> <probe-url> [runs]
+#
+# probe-url - эндпоинт с аннотацией безопасности, который проходит через
+# AnnotationBasedAuthorizationChecker (например, http://localhost:8080/api/declarations).
+#
+# Переменные окружения: JAVA, JAVA_OPTS, CURL_OPTS, TIMEOUT (см. build-appcds-archive.sh),
+# ARCHIVE - путь к AppCDS-архиву (по умолчанию рядом с jar).
+
+set -euo pipefail
+
+if [ $# -lt 2 ]; then
+    echo "Usage: $0 <app.jar> <probe-url> [runs]" >&2
+    exit 1
+fi
+
+JAR="$1"
+PROBE_URL="$2"
+RUNS="${3:-5}"
+JAVA="${JAVA:-java}"
+TIMEOUT="${TIMEOUT:-120}"
+ARCHIVE="${ARCHIVE:-${JAR%.jar}.jsa}"
+SCRIPT_DIR="$(cd "$(dirname "$0")" && pwd)"
+
+# shellcheck source=appcds-common.sh
+. "$SCRIPT_DIR/appcds-common.sh"
+prepare_launch "$JAR"
+
+# Один запуск: печатает строку StartupTimeline с временем до первого решения
+run_once() {
+    local log pid deadline line
+    log="$(mktemp)"
+    # shellcheck disable=SC2086
+    "$JAVA" "$@" ${JAVA_OPTS:-} "${LAUNCH[@]}" >"$log" 2>&1 &
+    pid=$!
+    deadline=$((SECONDS + TIMEOUT))
+    until line="$(grep -o "Time to first authorization decision: .*" "$log")"; do
+        if ! kill -0 "$pid" 2>/dev/null || [ "$SECONDS" -ge "$deadline" ]; then
+            kill "$pid" 2>/dev/null || true
+            echo "Run failed, see $log" >&2
+            return 1
+        fi
+        # shellcheck disable=SC2086
+        curl -s -o /dev/null ${CURL_OPTS:-} "$PROBE_URL" || true
+        sleep 0.05
+    done
+    kill -TERM "$pid"
+    wait "$pid" || true
+    rm -f "$log"
+    echo "$line"
+}
+
+# Серия запусков: печатает каждый результат и возвращает среднее через переменную AVG
+run_series() {
+    local label="$1"
+    shift
+    local total=0 line ms
+    for i in $(seq 1 "$RUNS"); do
+        line="$(run_once "$@")"
+        ms="$(echo "$line" | sed -E 's/Time to first authorization decision: ([0-9]+) ms.*/\1/')"
+        total=$((total + ms))
+        echo "  [$label] run $i: $line"
+    done
+    AVG=$((total / RUNS))
+}
+
+echo "Baseline (no AppCDS), $RUNS runs:"
+run_series "jvm"
+BASELINE=$AVG
+
+echo "Training run for AppCDS archive..."
+"$SCRIPT_DIR/build-appcds-archive.sh" "$JAR" "$ARCHIVE" "$PROBE_URL"
+
+echo "With AppCDS ($ARCHIVE), $RUNS runs:"
+run_series "appcds" -XX:SharedArchiveFile="$ARCHIVE"
+CDS=$AVG
+
+echo
+echo "Time to first authorization decision (average of $RUNS runs):"
+echo "  without AppCDS: ${BASELINE} ms"
+echo "  with AppCDS:    ${CDS} ms"
+if [ "$BASELINE" -gt 0 ]; then
+    echo "  improvement:    $(( (BASELINE - CDS) * 100 / BASELINE ))%"
+fi